@@ -0,0 +1,55 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Fixtures shared by the enigma benchmarks.
+ *  @author David Babazadeh
+ */
+final class Benchmarks {
+
+    /** Not instantiable. */
+    private Benchmarks() {
+    }
+
+    /** Directory holding the acceptance-test inputs.  Overridden by the
+     *  system property enigma.testing. */
+    static final String TESTING =
+        System.getProperty("enigma.testing", "../testing/correct");
+
+    /** The naval rotors with the standard alphabet. */
+    static final String DEFAULT_CONF = TESTING + "/default.conf";
+
+    /** Wiring of naval rotor I. */
+    static final String ROTOR_I =
+        "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)";
+
+    /** Return a machine configured from DEFAULT_CONF with the settings
+     *  used in the acceptance tests. */
+    static Machine navalMachine() {
+        String config;
+        try {
+            config = Files.readString(Path.of(DEFAULT_CONF));
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+        Machine mach = new ConfigParser(config).parse().newMachine();
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                          mach.alphabet()));
+        return mach;
+    }
+
+    /** Return a message of LENGTH upper-case letters. */
+    static String message(int length) {
+        char[] msg = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            msg[i] = (char) ('A' + (i * 7 + i / 13) % 26);
+        }
+        return new String(msg);
+    }
+
+}
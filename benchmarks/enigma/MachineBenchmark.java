@@ -0,0 +1,78 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Throughput of whole-machine conversions, in characters per second.
+ *  @author David Babazadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MachineBenchmark {
+
+    /** Build the machine under test. */
+    @Setup
+    public void setUp() {
+        _mach = Benchmarks.navalMachine();
+    }
+
+    /** Convert one character at a time. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void convertInt(Blackhole bh) {
+        for (int i = 0; i < 26; i += 1) {
+            bh.consume(_mach.convert(i));
+        }
+    }
+
+    /** Convert a whole MESSAGE, counting the characters converted in
+     *  COUNTER. */
+    @Benchmark
+    public String convertString(Message message, CharCounter counter) {
+        counter.chars += message.length;
+        return _mach.convert(message._msg);
+    }
+
+    /** A message of each of several lengths, for convertString. */
+    @State(Scope.Thread)
+    public static class Message {
+
+        /** Length of the message. */
+        @Param({ "16", "1024", "65536" })
+        public int length;
+
+        /** Build the message. */
+        @Setup
+        public void setUp() {
+            _msg = Benchmarks.message(length);
+        }
+
+        /** The message. */
+        private String _msg;
+    }
+
+    /** Characters converted by convertString, which JMH reports per
+     *  second alongside the per-message score. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CharCounter {
+        /** Characters converted so far in the current iteration. */
+        public long chars;
+    }
+
+    /** Machine under test. */
+    private Machine _mach;
+
+}
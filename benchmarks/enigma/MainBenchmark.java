@@ -0,0 +1,101 @@
+package enigma;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Cost of configuration parsing and of complete runs of Main on the
+ *  acceptance-test inputs.
+ *  @author David Babazadeh
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MainBenchmark {
+
+    /** Return the configuration file for the acceptance-test input
+     *  INPUT. */
+    private static String config(String input) {
+        String conf = Benchmarks.TESTING + "/" + input + ".conf";
+        return new File(conf).exists() ? conf : Benchmarks.DEFAULT_CONF;
+    }
+
+    /** A Main that only reads its configuration, opening no message
+     *  files, kept for a whole trial. */
+    @State(Scope.Thread)
+    public static class ConfigState {
+
+        /** Name of the acceptance-test input (without .in) whose
+         *  configuration is read. */
+        @Param({ "trivial", "riptide", "carrol_rings" })
+        public String input;
+
+        /** Read the configuration file. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            _main = new Main(List.of(config(input)));
+        }
+
+        /** Close any files _main opened. */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            _main.close();
+        }
+
+        /** Main under test. */
+        private Main _main;
+    }
+
+    /** A Main with fresh input and output files for each invocation. */
+    @State(Scope.Thread)
+    public static class ProcessState {
+
+        /** Name of the acceptance-test input (without .in) to run. */
+        @Param({ "trivial", "riptide", "carrol_rings" })
+        public String input;
+
+        /** Open the configuration, input and output files. */
+        @Setup(Level.Invocation)
+        public void setUp() {
+            _main = new Main(List.of(config(input),
+                                     Benchmarks.TESTING + "/" + input
+                                     + ".in", NULL_OUTPUT));
+        }
+
+        /** Close the files opened by setUp. */
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            _main.close();
+        }
+
+        /** Main under test. */
+        private Main _main;
+    }
+
+    /** Parse the configuration. */
+    @Benchmark
+    public Machine readConfig(ConfigState state) {
+        return state._main.readConfig();
+    }
+
+    /** Run Main over the whole input. */
+    @Benchmark
+    public void process(ProcessState state) {
+        state._main.process();
+    }
+
+    /** File receiving processed messages. */
+    private static final String NULL_OUTPUT =
+        System.getProperty("enigma.nullOutput", "/dev/null");
+
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Throughput of Permutation and Alphabet lookups, in characters per
+ *  second.
+ *  @author David Babazadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PermutationBenchmark {
+
+    /** Build the permutation under test. */
+    @Setup
+    public void setUp() {
+        _alphabet = new Alphabet();
+        _perm = new Permutation(Benchmarks.ROTOR_I, _alphabet);
+    }
+
+    /** Apply the permutation to every index. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void permute(Blackhole bh) {
+        for (int i = 0; i < 26; i += 1) {
+            bh.consume(_perm.permute(i));
+        }
+    }
+
+    /** Apply the inverse permutation to every index. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void invert(Blackhole bh) {
+        for (int i = 0; i < 26; i += 1) {
+            bh.consume(_perm.invert(i));
+        }
+    }
+
+    /** Apply the permutation to every character. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void permuteChar(Blackhole bh) {
+        for (char c = 'A'; c <= 'Z'; c += 1) {
+            bh.consume(_perm.permute(c));
+        }
+    }
+
+    /** Look up the index of every character. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void alphabetToInt(Blackhole bh) {
+        for (char c = 'A'; c <= 'Z'; c += 1) {
+            bh.consume(_alphabet.toInt(c));
+        }
+    }
+
+    /** Alphabet of _perm. */
+    private Alphabet _alphabet;
+
+    /** Permutation under test. */
+    private Permutation _perm;
+
+}
@@ -0,0 +1,56 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Throughput of single rotor passes, in characters per second.
+ *  @author David Babazadeh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RotorBenchmark {
+
+    /** Build the rotor under test. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = new Alphabet();
+        _rotor = new MovingRotor("I",
+                new Permutation(Benchmarks.ROTOR_I, alpha), "Q");
+    }
+
+    /** Pass every index forward through the rotor. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void convertForward(Blackhole bh) {
+        for (int i = 0; i < 26; i += 1) {
+            bh.consume(_rotor.convertForward(i, _setting));
+        }
+    }
+
+    /** Pass every index backward through the rotor. */
+    @Benchmark
+    @OperationsPerInvocation(26)
+    public void convertBackward(Blackhole bh) {
+        for (int i = 0; i < 26; i += 1) {
+            bh.consume(_rotor.convertBackward(i, _setting));
+        }
+    }
+
+    /** Rotor under test. */
+    private Rotor _rotor;
+
+    /** Setting of _rotor, away from its 0 setting.  Not final, so that
+     *  it is not constant-folded. */
+    private int _setting = 7;
+
+}
@@ -1,9 +1,13 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.error;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are looked up
+ *  through a dense table when the alphabet spans a small range of
+ *  character codes, and through an open-addressing hash table otherwise.
  *  @author David Babazadeh
  */
 class Alphabet {
@@ -12,14 +16,51 @@ class Alphabet {
      *  K (numbering from 0). No character may be duplicated.  */
     Alphabet(String chars) {
         _chars = chars;
-        for (int i = _chars.length() - 1; i > 0; i -= 1) {
-            char ch = _chars.charAt(i);
+        _charArray = chars.toCharArray();
+
+        int lo = Character.MAX_VALUE, hi = 0;
+        for (char ch : _charArray) {
+            lo = Math.min(lo, ch);
+            hi = Math.max(hi, ch);
+        }
 
-            if (i != _chars.indexOf(ch) || ch == ')' || ch == '(') {
+        if (_charArray.length == 0 || hi - lo < DENSE_LIMIT) {
+            _base = lo;
+            _dense = new int[Math.max(0, hi - lo + 1)];
+            Arrays.fill(_dense, -1);
+            _keys = null;
+            _values = null;
+            _mask = 0;
+        } else {
+            int capacity = Integer.highestOneBit(_charArray.length * 2) * 2;
+            _base = 0;
+            _dense = null;
+            _keys = new char[capacity];
+            _values = new int[capacity];
+            Arrays.fill(_values, -1);
+            _mask = capacity - 1;
+        }
+
+        for (int i = 0; i < _charArray.length; i += 1) {
+            char ch = _charArray[i];
+            if (ch == ')' || ch == '(' || !put(ch, i)) {
                 throw error("invalid alphabet: "
                         + "repeated or invalid character %c", ch);
             }
         }
+
+        if (hi < BYTE_VALUES) {
+            _byteIndex = new int[BYTE_VALUES];
+            _bytes = new byte[_charArray.length];
+            Arrays.fill(_byteIndex, -1);
+            for (int i = 0; i < _charArray.length; i += 1) {
+                _byteIndex[_charArray[i]] = i;
+                _bytes[i] = (byte) _charArray[i];
+            }
+        } else {
+            _byteIndex = null;
+            _bytes = null;
+        }
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -29,31 +70,151 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return _charArray.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return _chars.contains(Character.toString(ch));
+        return indexOf(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size(). */
     char toChar(int index) {
-        return _chars.charAt(index);
+        return _charArray[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        int index = _chars.indexOf(ch);
-        return switch (index) {
-        case (-1) -> throw error("character %s not in alphabet");
-        default -> index;
-        };
+        int index = indexOf(ch);
+        if (index < 0) {
+            throw error("character %c not in alphabet", ch);
+        }
+        return index;
     }
 
+    /** Returns true iff every character of this alphabet fits in a
+     *  single byte (ISO-8859-1), so that text in it may be handled as
+     *  bytes. */
+    boolean singleByte() {
+        return _bytes != null;
+    }
+
+    /** Returns the index of the character whose code is the unsigned
+     *  value of B, which must be in the alphabet.  Requires
+     *  singleByte(). */
+    int byteToInt(byte b) {
+        int index = _byteIndex[b & 0xff];
+        if (index < 0) {
+            throw error("character %c not in alphabet", (char) (b & 0xff));
+        }
+        return index;
+    }
+
+    /** Returns character number INDEX as a byte.  Requires
+     *  singleByte(). */
+    byte toByte(int index) {
+        return _bytes[index];
+    }
+
+    /** Returns the indices of the characters of TEXT, skipping
+     *  whitespace.  Every other character must be in this alphabet. */
+    int[] indices(CharSequence text) {
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char ch = text.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                continue;
+            } else if (!contains(ch)) {
+                throw error("character %c not in alphabet", ch);
+            }
+            result[n] = toInt(ch);
+            n += 1;
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /** Returns the characters of this alphabet, in order. */
+    @Override
+    public String toString() {
+        return _chars;
+    }
+
+    /** Return the index of CH, or -1 if CH is not in this alphabet. */
+    private int indexOf(char ch) {
+        if (_dense != null) {
+            int k = ch - _base;
+            return k >= 0 && k < _dense.length ? _dense[k] : -1;
+        }
+        for (int h = hash(ch); ; h = (h + 1) & _mask) {
+            if (_values[h] < 0 || _keys[h] == ch) {
+                return _values[h];
+            }
+        }
+    }
+
+    /** Record that CH has index INDEX.  Returns false if CH was already
+     *  present. */
+    private boolean put(char ch, int index) {
+        if (_dense != null) {
+            if (_dense[ch - _base] >= 0) {
+                return false;
+            }
+            _dense[ch - _base] = index;
+            return true;
+        }
+        int h = hash(ch);
+        while (_values[h] >= 0) {
+            if (_keys[h] == ch) {
+                return false;
+            }
+            h = (h + 1) & _mask;
+        }
+        _keys[h] = ch;
+        _values[h] = index;
+        return true;
+    }
+
+    /** Return the home slot of CH in the sparse table. */
+    private int hash(char ch) {
+        return (ch * 0x9E3779B1) >>> 16 & _mask;
+    }
+
+    /** Number of distinct byte values. */
+    private static final int BYTE_VALUES = 256;
+
+    /** Largest span of character codes indexed by a dense table. */
+    private static final int DENSE_LIMIT = 1024;
+
     /** string of unique, ordered alphabet characters. */
     private String _chars;
 
+    /** the characters of _chars, indexed directly by toChar. */
+    private final char[] _charArray;
+
+    /** character code corresponding to _dense[0]. */
+    private final int _base;
+
+    /** dense index table: _dense[CH - _base] is the index of CH, or -1. */
+    private final int[] _dense;
+
+    /** keys of the sparse open-addressing table. */
+    private final char[] _keys;
+
+    /** _values[K] is the index of _keys[K], or -1 for an empty slot. */
+    private final int[] _values;
+
+    /** mask reducing a hash to a slot of the sparse table. */
+    private final int _mask;
+
+    /** _byteIndex[B] is the index of the character with code B, or -1;
+     *  null unless all my characters fit in a byte. */
+    private final int[] _byteIndex;
+
+    /** _bytes[K] is character K as a byte; null unless all my
+     *  characters fit in a byte. */
+    private final byte[] _bytes;
+
 }
@@ -0,0 +1,66 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author David Babazadeh
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that ALPHA maps each character of CHARS to its index and
+     *  back. */
+    private void checkAlphabet(Alphabet alpha, String chars) {
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertTrue(msg("contains", "missing '%c'", c), alpha.contains(c));
+            assertEquals(msg("toInt", "wrong index of '%c'", c),
+                         i, alpha.toInt(c));
+            assertEquals(msg("toChar", "wrong character %d", i),
+                         c, alpha.toChar(i));
+        }
+    }
+
+    @Test
+    public void testDense() {
+        checkAlphabet(UPPER, UPPER_STRING);
+        assertFalse(UPPER.contains('a'));
+        assertFalse(UPPER.contains('@'));
+        checkAlphabet(new Alphabet("ABC8DEFGHIJKLMNOPQR-,.STUVWXYZ"),
+                      "ABC8DEFGHIJKLMNOPQR-,.STUVWXYZ");
+    }
+
+    @Test
+    public void testSparse() {
+        String chars = "AZ\u03b1\u05d0\u4e2d\uff21!";
+        Alphabet alpha = new Alphabet(chars);
+        checkAlphabet(alpha, chars);
+        assertFalse(alpha.contains('B'));
+        assertFalse(alpha.contains('\u4e2e'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeated() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeatedSparse() {
+        new Alphabet("A\u4e2dB\u4e2d");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotInAlphabet() {
+        UPPER.toInt('a');
+    }
+
+}
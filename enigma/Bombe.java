@@ -0,0 +1,420 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
+
+/** A Turing-Welchman bombe: finds the wheel orders, rotor settings and
+ *  partial plugboards (with the rings at their 0 settings) consistent
+ *  with a crib, a guess at the plaintext of part of a message.
+ *
+ *  <p>Each crib letter P facing cipher letter C at message position T
+ *  makes an edge of the menu between letters P and C: if P is plugged
+ *  to X, then C is plugged to S(X), where S is the substitution of the
+ *  rotors alone at position T.  Starting from a guess that the most
+ *  connected letter of the menu is plugged to some letter, the bombe
+ *  lights every plug connection that follows, through the edges and
+ *  through the diagonal board (X plugged to Y implies Y plugged to X).
+ *  The connections implied by each letter are kept as a bit mask, so an
+ *  edge maps a whole set of hypotheses at once.  If the guess is wrong,
+ *  every connection of the test letter usually lights; otherwise the
+ *  bombe stops, and each unlit connection is a candidate that is then
+ *  checked for consistency (no letter plugged to two others).
+ *
+ *  <p>Wheel orders and settings of the non-moving rotors are divided
+ *  among the workers of a ForkJoinPool, each with a machine of its own
+ *  and a KeystreamTable for the rotors, without plugboard, from which
+ *  the substitutions at every rotor state are read.  A crib of unknown
+ *  position is tried at each position a CribDrag allows.
+ *  @author David Babazadeh
+ */
+final class Bombe {
+
+    /** Largest alphabet whose letter sets fit in a mask. */
+    static final int MAX_ALPHABET = Long.SIZE;
+
+    /** A bombe for the machines made by FACTORY, whose alphabet must
+     *  have at most MAX_ALPHABET characters. */
+    Bombe(MachineFactory factory) {
+        if (factory.alphabet().size() > MAX_ALPHABET) {
+            throw error("alphabet too large for a bombe");
+        }
+        _factory = factory;
+        _identity = new Permutation("", factory.alphabet());
+        _machines = ThreadLocal.withInitial(factory::newMachine);
+        _orders = SearchSpace.wheelOrders(factory);
+    }
+
+    /** Return the stops for CRIB placed at each position of CIPHERTEXT
+     *  allowed by a CribDrag, in order of position, searching in the
+     *  common pool. */
+    List<Stop> run(String ciphertext, String crib) {
+        List<Stop> result = new ArrayList<>();
+        CribDrag drag = new CribDrag(_factory.alphabet(), crib);
+        for (int offset : drag.offsets(ciphertext)) {
+            result.addAll(run(ciphertext, crib, offset));
+        }
+        return result;
+    }
+
+    /** Return the stops for CRIB placed at position OFFSET of CIPHERTEXT,
+     *  searching in the common pool. */
+    List<Stop> run(String ciphertext, String crib, int offset) {
+        return run(ciphertext, crib, offset, ForkJoinPool.commonPool());
+    }
+
+    /** Return the stops for CRIB placed at position OFFSET of CIPHERTEXT,
+     *  searching in POOL, in order of wheel order and then of rotor
+     *  settings.  Whitespace in both texts is ignored. */
+    List<Stop> run(String ciphertext, String crib, int offset,
+                   ForkJoinPool pool) {
+        Menu menu = new Menu(_factory.alphabet().indices(ciphertext),
+                             _factory.alphabet().indices(crib), offset);
+        int fixedSettings = SearchSpace.fixedSettings(_factory);
+        List<ForkJoinTask<List<Stop>>> tasks = new ArrayList<>();
+        for (int order = 0; order < _orders.size(); order += 1) {
+            for (int f = 0; f < fixedSettings; f += 1) {
+                int o = order, fixed = f;
+                tasks.add(ForkJoinTask.adapt(() -> run(menu, o, fixed)));
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        List<Stop> result = new ArrayList<>();
+        for (ForkJoinTask<List<Stop>> task : tasks) {
+            result.addAll(task.join());
+        }
+        return result;
+    }
+
+    /** Return the stops for MENU with wheel order ORDER and the
+     *  non-moving rotors at setting number FIXED, at every setting of the
+     *  moving rotors. */
+    private List<Stop> run(Menu menu, int order, int fixed) {
+        Machine mach = _machines.get();
+        mach.insertRotors(_orders.get(order));
+        mach.setRotors(SearchSpace.setting(_factory, fixed, 0));
+        mach.setPlugboard(_identity);
+        KeystreamTable table = new KeystreamTable(mach);
+        Registers registers = new Registers(menu, table);
+
+        List<Stop> stops = new ArrayList<>();
+        for (int state = 0; state < table.numStates(); state += 1) {
+            registers.position(state);
+            long candidates = registers.test();
+            while (candidates != 0) {
+                int stecker = Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                String steckers = registers.confirm(stecker);
+                if (steckers != null) {
+                    String setting =
+                        SearchSpace.setting(_factory, fixed, state);
+                    stops.add(new Stop(_orders.get(order), setting,
+                                       steckers, menu._offset));
+                }
+            }
+        }
+        return stops;
+    }
+
+    /** The graph of letters connected by a crib. */
+    private final class Menu {
+
+        /** The menu for the crib CRIB at position OFFSET of CIPHER, both
+         *  given as alphabet indices. */
+        Menu(int[] cipher, int[] crib, int offset) {
+            if (offset < 0 || offset + crib.length > cipher.length) {
+                throw error("crib does not fit within the ciphertext");
+            } else if (crib.length == 0) {
+                throw error("empty crib");
+            }
+            int size = _factory.alphabet().size();
+            _positions = new int[crib.length];
+            _from = new int[crib.length];
+            _to = new int[crib.length];
+            int[] degree = new int[size];
+            for (int i = 0; i < crib.length; i += 1) {
+                if (crib[i] == cipher[offset + i]) {
+                    throw error("crib letter %c at position %d encrypts to "
+                                + "itself",
+                                _factory.alphabet().toChar(crib[i]),
+                                offset + i);
+                }
+                _positions[i] = offset + i;
+                _from[i] = crib[i];
+                _to[i] = cipher[offset + i];
+                degree[crib[i]] += 1;
+                degree[cipher[offset + i]] += 1;
+            }
+
+            _edges = new int[size][];
+            int test = 0;
+            for (int c = 0; c < size; c += 1) {
+                _edges[c] = new int[degree[c]];
+                if (degree[c] > degree[test]) {
+                    test = c;
+                }
+                degree[c] = 0;
+            }
+            for (int e = 0; e < crib.length; e += 1) {
+                _edges[_from[e]][degree[_from[e]]] = e;
+                degree[_from[e]] += 1;
+                _edges[_to[e]][degree[_to[e]]] = e;
+                degree[_to[e]] += 1;
+            }
+            _test = test;
+            _offset = offset;
+        }
+
+        /** _positions[E] is the message position of edge E. */
+        private final int[] _positions;
+
+        /** Edge E joins letters _from[E] and _to[E]. */
+        private final int[] _from, _to;
+
+        /** _edges[C] lists the edges at letter C. */
+        private final int[][] _edges;
+
+        /** The letter of the menu with the most edges. */
+        private final int _test;
+
+        /** Position of the crib in the ciphertext. */
+        private final int _offset;
+    }
+
+    /** The registers and scramblers of one bombe run: the state of one
+     *  worker for one wheel order. */
+    private static final class Registers {
+
+        /** Registers for MENU whose scramblers are taken from TABLE. */
+        Registers(Menu menu, KeystreamTable table) {
+            _menu = menu;
+            _table = table;
+            _size = table.size();
+            _rows = new int[menu._positions.length];
+            _lit = new long[_size];
+            _fresh = new long[_size];
+            _queue = new int[_size];
+            _queued = new boolean[_size];
+            _full = _size == Long.SIZE ? -1L : (1L << _size) - 1;
+            _jump = table.jump(menu._offset);
+            _states = new int[menu._positions.length];
+        }
+
+        /** Set the scramblers for the moving rotors starting in STATE,
+         *  jumping straight to the crib and stepping only across it. */
+        void position(int state) {
+            state = _jump[state];
+            for (int t = 0; t < _states.length; t += 1) {
+                state = _table.next(state);
+                _states[t] = state;
+            }
+            for (int e = 0; e < _rows.length; e += 1) {
+                _rows[e] = _states[_menu._positions[e] - _menu._offset];
+            }
+        }
+
+        /** Return the set of connections of the test letter that remain
+         *  possible after lighting the consequences of connecting it to
+         *  the first letter. */
+        long test() {
+            long lit = light(0, true)[_menu._test];
+            return (~lit & _full) | (Long.bitCount(lit) == 1 ? lit : 0);
+        }
+
+        /** Return the plug connections implied by connecting the test
+         *  letter to STECKER, as cycles for a Permutation, or null if
+         *  they connect some letter to two others. */
+        String confirm(int stecker) {
+            long[] lit = light(stecker, false);
+            StringBuilder result = new StringBuilder();
+            Alphabet alpha = _table.alphabet();
+            for (int c = 0; c < _size; c += 1) {
+                if (lit[c] == 0) {
+                    continue;
+                } else if (Long.bitCount(lit[c]) > 1) {
+                    return null;
+                }
+                int d = Long.numberOfTrailingZeros(lit[c]);
+                if (c < d) {
+                    if (result.length() > 0) {
+                        result.append(' ');
+                    }
+                    result.append('(').append(alpha.toChar(c))
+                        .append(alpha.toChar(d)).append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** Light every connection implied by connecting the test letter
+         *  to STECKER, returning the masks of lit connections of each
+         *  letter.  If UNTILFULL, stop once every connection of the test
+         *  letter is lit. */
+        private long[] light(int stecker, boolean untilFull) {
+            Arrays.fill(_lit, 0);
+            Arrays.fill(_fresh, 0);
+            Arrays.fill(_queued, false);
+            _head = _count = 0;
+            int test = _menu._test;
+            add(test, 1L << stecker);
+            while (_count > 0 && !(untilFull && _lit[test] == _full)) {
+                int c = _queue[_head];
+                _head = _head + 1 == _size ? 0 : _head + 1;
+                _count -= 1;
+                _queued[c] = false;
+                long fresh = _fresh[c];
+                _fresh[c] = 0;
+
+                for (long bits = fresh; bits != 0; bits &= bits - 1) {
+                    add(Long.numberOfTrailingZeros(bits), 1L << c);
+                }
+                for (int e : _menu._edges[c]) {
+                    int other = _menu._from[e] == c ? _menu._to[e]
+                        : _menu._from[e];
+                    long mapped = 0;
+                    for (long bits = fresh; bits != 0; bits &= bits - 1) {
+                        mapped |= 1L << _table.convert(_rows[e],
+                                Long.numberOfTrailingZeros(bits));
+                    }
+                    add(other, mapped);
+                }
+            }
+            return _lit;
+        }
+
+        /** Light the connections BITS of letter C, queueing C to
+         *  propagate any that are new. */
+        private void add(int c, long bits) {
+            long fresh = bits & ~_lit[c];
+            if (fresh == 0) {
+                return;
+            }
+            _lit[c] |= fresh;
+            _fresh[c] |= fresh;
+            if (!_queued[c]) {
+                _queued[c] = true;
+                int tail = _head + _count;
+                _queue[tail < _size ? tail : tail - _size] = c;
+                _count += 1;
+            }
+        }
+
+        /** The menu being tested. */
+        private final Menu _menu;
+
+        /** Substitutions of the rotors at each state. */
+        private final KeystreamTable _table;
+
+        /** Size of the alphabet. */
+        private final int _size;
+
+        /** _jump[S] is the rotor state just before the crib, starting
+         *  in state S. */
+        private final int[] _jump;
+
+        /** _states[T] is the rotor state at position T of the crib. */
+        private final int[] _states;
+
+        /** _rows[E] is the rotor state at the position of edge E. */
+        private final int[] _rows;
+
+        /** _lit[C] has bit X set iff C is known to be plugged to X. */
+        private final long[] _lit;
+
+        /** Connections of each letter not yet propagated. */
+        private final long[] _fresh;
+
+        /** Circular queue of letters with connections to propagate. */
+        private final int[] _queue;
+
+        /** _queued[C] iff C is in _queue. */
+        private final boolean[] _queued;
+
+        /** Index of the first letter in _queue. */
+        private int _head;
+
+        /** Number of letters in _queue. */
+        private int _count;
+
+        /** Mask of all the letters. */
+        private final long _full;
+    }
+
+    /** A setting at which the bombe stopped. */
+    static final class Stop {
+
+        /** A stop at wheel order ROTORS and rotor settings SETTING, with
+         *  the plug connections STECKERS, for a crib at position
+         *  OFFSET. */
+        private Stop(String[] rotors, String setting, String steckers,
+                     int offset) {
+            _rotors = rotors.clone();
+            _setting = setting;
+            _steckers = steckers;
+            _offset = offset;
+        }
+
+        /** Return the names of my rotors, from the reflector on. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return the settings of my rotors, leftmost first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plug connections implied by the crib, as
+         *  cycles. */
+        String steckers() {
+            return _steckers;
+        }
+
+        /** Return the position of the crib in the ciphertext. */
+        int offset() {
+            return _offset;
+        }
+
+        /** Return a settings line that sets a machine to me, with only
+         *  the plug connections implied by the crib. */
+        String settingsLine() {
+            return "* " + String.join(" ", _rotors) + " " + _setting
+                + (_steckers.isEmpty() ? "" : " " + _steckers);
+        }
+
+        @Override
+        public String toString() {
+            return settingsLine();
+        }
+
+        /** Names of my rotors. */
+        private final String[] _rotors;
+
+        /** Settings of my rotors. */
+        private final String _setting;
+
+        /** Implied plug connections. */
+        private final String _steckers;
+
+        /** Position of the crib. */
+        private final int _offset;
+    }
+
+    /** Source of my machines. */
+    private final MachineFactory _factory;
+
+    /** The plugboard that leaves every character alone. */
+    private final Permutation _identity;
+
+    /** Each worker thread's machine. */
+    private final ThreadLocal<Machine> _machines;
+
+    /** The wheel orders tried. */
+    private final List<String[]> _orders;
+
+}
@@ -0,0 +1,50 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author David Babazadeh
+ */
+public class BombeTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRun() {
+        MachineFactory factory = KeySearchTest.factory("II", "IV", "V");
+        String plain = KeySearchTest.PLAIN;
+        String key = "* B V II IV QRS (AM) (FI) (NV) (PS) (TU) (WZ)";
+        String cipher = factory.convert(key, plain);
+        List<Bombe.Stop> stops =
+            new Bombe(factory).run(cipher, plain.substring(20, 48), 20);
+        List<String> lines = new ArrayList<>();
+        for (Bombe.Stop stop : stops) {
+            lines.add(stop.settingsLine());
+        }
+        assertTrue(lines.contains(key));
+        assertTrue(stops.size() < 10);
+        assertEquals(20, stops.get(0).offset());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribEncryptsToItself() {
+        MachineFactory factory = KeySearchTest.factory("II", "IV", "V");
+        new Bombe(factory).run("ABCDE", "XBX", 0);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCribTooLong() {
+        MachineFactory factory = KeySearchTest.factory("II", "IV", "V");
+        new Bombe(factory).run("ABCDE", "BCDEFG", 0);
+    }
+
+}
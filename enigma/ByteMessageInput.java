@@ -0,0 +1,201 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A source of the single-byte characters of an input file for Main,
+ *  read as a sequence of windows of bytes.  Settings lines are decoded
+ *  whole; message text is returned as views of the runs of message
+ *  bytes in the windows themselves, so that it can be converted
+ *  without copying.  Subclasses supply the windows; every window but
+ *  the last should end with a line terminator, unless a single line
+ *  fills it.
+ *  @author David Babazadeh
+ */
+class ByteMessageInput {
+
+    /** An input reading the bytes remaining in each of WINDOWS, in
+     *  order. */
+    ByteMessageInput(List<ByteBuffer> windows) {
+        _windows = windows.iterator();
+    }
+
+    /** An input whose windows are supplied by a subclass's window(). */
+    ByteMessageInput() {
+        this(List.of());
+    }
+
+    /** Return the next byte without consuming it, or -1 at the end of
+     *  the input. */
+    final int peek() {
+        if (_pos == _limit && !advance()) {
+            return -1;
+        }
+        return _window.get(_pos) & 0xff;
+    }
+
+    /** Consume the rest of the current line, including its terminator,
+     *  and return it without the terminator. */
+    String readLine() {
+        StringBuilder line = new StringBuilder();
+        while (_pos < _limit || advance()) {
+            int start = _pos;
+            while (_pos < _limit && _window.get(_pos) != '\n') {
+                _pos += 1;
+            }
+            line.append(decode(start, _pos));
+            if (_pos < _limit) {
+                _pos += 1;
+                break;
+            }
+        }
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            line.setLength(end - 1);
+        }
+        return line.toString();
+    }
+
+    /** Return a view of the next run of message bytes on the current
+     *  line, skipping whitespace, or null if the line has ended, in
+     *  which case its terminator has been consumed.  The view is valid
+     *  until the next call on this input.  As for MessageInput, a '*'
+     *  in the message is a malformed settings line, and is rejected. */
+    ByteBuffer readMessage() {
+        while (true) {
+            if (_pos == _limit && !advance()) {
+                return null;
+            }
+            byte b = _window.get(_pos);
+            if (b == '\n') {
+                _pos += 1;
+                return null;
+            } else if (!isWhitespace(b)) {
+                break;
+            }
+            _pos += 1;
+        }
+        int start = _pos;
+        while (_pos < _limit) {
+            byte b = _window.get(_pos);
+            if (b == '*') {
+                throw error(MessageInput.MISPLACED_SETTINGS);
+            } else if (isWhitespace(b)) {
+                break;
+            }
+            _pos += 1;
+        }
+        _run.clear();
+        _run.limit(_pos).position(start);
+        return _run;
+    }
+
+    /** Consume the lines up to the next settings line or the end of the
+     *  input, and return their bytes, including whitespace and line
+     *  terminators, as a list of buffers.  The buffers are views of my
+     *  windows if those are stable(), and copies otherwise. */
+    List<ByteBuffer> readSection() {
+        ArrayList<ByteBuffer> parts = new ArrayList<>();
+        boolean lineStart = true;
+        while (_pos < _limit || advance()) {
+            int start = _pos;
+            while (_pos < _limit
+                   && !(lineStart && _window.get(_pos) == '*')) {
+                lineStart = _window.get(_pos) == '\n';
+                _pos += 1;
+            }
+            if (_pos > start) {
+                parts.add(part(start, _pos));
+            }
+            if (_pos < _limit) {
+                break;
+            }
+        }
+        return parts;
+    }
+
+    /** Return the next window, or null if there are no more.  The
+     *  window's bytes are those between its position and limit. */
+    ByteBuffer window() throws IOException {
+        return _windows.hasNext() ? _windows.next() : null;
+    }
+
+    /** Return true iff the windows I return are left unchanged by later
+     *  calls to window(). */
+    boolean stable() {
+        return true;
+    }
+
+    /** Return true iff the byte B would be read as a whitespace
+     *  character. */
+    private static boolean isWhitespace(byte b) {
+        return Character.isWhitespace((char) (b & 0xff));
+    }
+
+    /** Return the bytes START .. END-1 of my current window as a
+     *  string. */
+    private String decode(int start, int end) {
+        ByteBuffer bytes = _window.duplicate();
+        bytes.limit(end).position(start);
+        return StandardCharsets.ISO_8859_1.decode(bytes).toString();
+    }
+
+    /** Return the bytes START .. END-1 of my current window as a buffer
+     *  that is unaffected by later windows. */
+    private ByteBuffer part(int start, int end) {
+        ByteBuffer bytes = _window.duplicate();
+        bytes.limit(end).position(start);
+        if (stable()) {
+            return bytes.slice();
+        }
+        ByteBuffer copy = ByteBuffer.allocate(end - start);
+        copy.put(bytes).flip();
+        return copy;
+    }
+
+    /** Move on to my next non-empty window, returning false at the end
+     *  of the input. */
+    private boolean advance() {
+        try {
+            do {
+                _window = _eof ? null : window();
+                if (_window == null) {
+                    _eof = true;
+                    _pos = _limit = 0;
+                    return false;
+                }
+            } while (!_window.hasRemaining());
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+        _pos = _window.position();
+        _limit = _window.limit();
+        _run = _window.duplicate();
+        return true;
+    }
+
+    /** Windows not yet read, for an input over a fixed list of them. */
+    private final Iterator<ByteBuffer> _windows;
+
+    /** The window currently being read. */
+    private ByteBuffer _window;
+
+    /** View of _window returned by readMessage. */
+    private ByteBuffer _run;
+
+    /** Index of the next unread byte in _window. */
+    private int _pos;
+
+    /** Index just past the last unread byte in _window. */
+    private int _limit;
+
+    /** True once the windows are exhausted. */
+    private boolean _eof;
+
+}
@@ -0,0 +1,117 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static enigma.EnigmaException.*;
+
+/** A destination for messages in single-byte characters, converted by
+ *  a Machine straight into a byte buffer and printed in groups of five
+ *  characters separated by spaces.  The buffer grows as needed;
+ *  subclasses may instead write it out when it fills.
+ *  @author David Babazadeh
+ */
+class ByteMessageOutput {
+
+    /** An output collecting its bytes in BYTES. */
+    ByteMessageOutput(ByteBuffer bytes) {
+        _bytes = bytes;
+    }
+
+    /** Convert the remaining bytes of MSG with MACH, whose alphabet must
+     *  be singleByte(), and print the results as a continuation of the
+     *  current line, in groups of five.  Consumes MSG. */
+    void convert(Machine mach, ByteBuffer msg) {
+        int end = msg.limit();
+        while (msg.position() < end) {
+            int n = Math.min(GROUP_SIZE - _group, end - msg.position());
+            reserve(n + 1);
+            msg.limit(msg.position() + n);
+            mach.convert(msg, _bytes);
+            _group += n;
+            if (_group == GROUP_SIZE) {
+                _bytes.put((byte) ' ');
+                _group = 0;
+            }
+        }
+        msg.limit(end);
+    }
+
+    /** End the current line. */
+    void endLine() {
+        reserve(NEWLINE.length);
+        _bytes.put(NEWLINE);
+        _group = 0;
+    }
+
+    /** Print the bytes remaining in BYTES, which are complete lines of
+     *  output from another ByteMessageOutput, consuming them. */
+    void write(ByteBuffer bytes) {
+        reserve(bytes.remaining());
+        _bytes.put(bytes);
+    }
+
+    /** Write out everything printed so far. */
+    void flush() {
+        try {
+            drain();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Return everything I have printed, ready to be read, leaving me
+     *  empty. */
+    ByteBuffer contents() {
+        ByteBuffer result = _bytes.flip();
+        _bytes = ByteBuffer.allocate(0);
+        return result;
+    }
+
+    /** Make room in _bytes for at least N more bytes.  By default, by
+     *  replacing it with a larger buffer. */
+    void makeRoom(int n) throws IOException {
+        ByteBuffer bigger = ByteBuffer.allocate(
+            Math.max(2 * _bytes.capacity(), _bytes.position() + n));
+        _bytes.flip();
+        bigger.put(_bytes);
+        _bytes = bigger;
+    }
+
+    /** Write out and empty _bytes, if I have a destination. */
+    void drain() throws IOException {
+    }
+
+    /** Return the buffer holding my unwritten bytes. */
+    final ByteBuffer bytes() {
+        return _bytes;
+    }
+
+    /** Ensure that _bytes has room for N more bytes. */
+    private void reserve(int n) {
+        if (_bytes.remaining() < n) {
+            try {
+                makeRoom(n);
+            } catch (IOException excp) {
+                throw error("could not write output: %s",
+                            excp.getMessage());
+            }
+        }
+    }
+
+    /** Number of characters in a group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Line terminator. */
+    private static final byte[] NEWLINE =
+        System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /** Bytes printed but not yet written, from the start of _bytes to
+     *  its position. */
+    private ByteBuffer _bytes;
+
+    /** Number of characters in the current group. */
+    private int _group;
+
+}
@@ -0,0 +1,83 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/** A ByteMessageInput that reads from a channel, such as a pipe or a
+ *  terminal, that cannot be mapped, into a direct buffer.  Each window
+ *  is the complete lines in the buffer, returned as soon as a read
+ *  completes at least one line, and the start of an incomplete line is
+ *  carried over to the next window, unless it fills the buffer.  So
+ *  that the results of each window appear before its input blocks
+ *  waiting for more, an output may be flushed before every read.
+ *  @author David Babazadeh
+ */
+final class ChannelMessageInput extends ByteMessageInput {
+
+    /** An input reading from CHANNEL, flushing OUTPUT, if it is not
+     *  null, before each read. */
+    ChannelMessageInput(ReadableByteChannel channel,
+                        ByteMessageOutput output) {
+        _channel = channel;
+        _output = output;
+        _bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _bytes.limit(0);
+    }
+
+    @Override
+    ByteBuffer window() throws IOException {
+        _bytes.compact();
+        int scanned = _bytes.position();
+        boolean complete = false;
+        while (!_eof && !complete && _bytes.hasRemaining()) {
+            if (_output != null) {
+                _output.flush();
+            }
+            _eof = _channel.read(_bytes) < 0;
+            while (scanned < _bytes.position() && !complete) {
+                complete = _bytes.get(scanned) == '\n';
+                scanned += 1;
+            }
+        }
+        _bytes.flip();
+        int end = _bytes.limit();
+        if (!_eof) {
+            while (end > 0 && _bytes.get(end - 1) != '\n') {
+                end -= 1;
+            }
+            if (end == 0) {
+                end = _bytes.limit();
+            }
+        }
+        if (end == 0) {
+            return null;
+        }
+        ByteBuffer window = _bytes.duplicate();
+        window.limit(end);
+        _bytes.position(end);
+        return window;
+    }
+
+    @Override
+    boolean stable() {
+        return false;
+    }
+
+    /** Size of the direct buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Source of my bytes. */
+    private final ReadableByteChannel _channel;
+
+    /** Output flushed before each read, or null. */
+    private final ByteMessageOutput _output;
+
+    /** Bytes read from _channel; those from its position to its limit
+     *  have not yet been returned in a window. */
+    private final ByteBuffer _bytes;
+
+    /** True once _channel is exhausted. */
+    private boolean _eof;
+
+}
@@ -0,0 +1,58 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static enigma.EnigmaException.*;
+
+/** A ByteMessageOutput that collects its output in a large direct
+ *  buffer and writes it straight to a channel whenever it fills.
+ *  @author David Babazadeh
+ */
+final class ChannelMessageOutput extends ByteMessageOutput {
+
+    /** An output writing to CHANNEL. */
+    ChannelMessageOutput(WritableByteChannel channel) {
+        super(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        _channel = channel;
+    }
+
+    @Override
+    void write(ByteBuffer bytes) {
+        if (bytes.remaining() <= bytes().remaining()) {
+            super.write(bytes);
+            return;
+        }
+        try {
+            drain();
+            while (bytes.hasRemaining()) {
+                _channel.write(bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    @Override
+    void makeRoom(int n) throws IOException {
+        drain();
+    }
+
+    @Override
+    void drain() throws IOException {
+        ByteBuffer bytes = bytes();
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            _channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /** Size of the direct buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Destination of my bytes. */
+    private final WritableByteChannel _channel;
+
+}
@@ -0,0 +1,201 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Reads and writes machine configurations in a compact binary form,
+ *  so that they can be loaded without parsing cycle notation.  All
+ *  numbers are big-endian.  A file holds, in order:
+ *  <pre>
+ *    int     MAGIC, int VERSION
+ *    int     alphabet size N, then N chars of the alphabet
+ *    int     number of rotor slots, int number of pawls
+ *    int     number of rotors, then for each rotor:
+ *      byte    kind (REFLECTOR, FIXED or MOVING)
+ *      short   length of name (at most Short.MAX_VALUE), then the
+ *              chars of the name
+ *      int[N]  forward table, int[N] inverse table
+ *      long[(N + 63) / 64]  notch mask (MOVING only)
+ *  </pre>
+ *  @author David Babazadeh
+ */
+final class CompiledConfig {
+
+    /** Not instantiable. */
+    private CompiledConfig() {
+    }
+
+    /** Return true iff the file named NAME exists and begins with the
+     *  header of a compiled configuration.  Since the header's first
+     *  byte never appears in a text file, a text configuration is never
+     *  taken for a compiled one. */
+    static boolean isCompiled(Path name) {
+        try (FileChannel in = FileChannel.open(name)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                continue;
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC
+                && header.getInt(Integer.BYTES) == VERSION;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return a factory for the machines described by the compiled
+     *  configuration in the file named NAME, which is memory-mapped. */
+    static MachineFactory read(Path name) {
+        try (FileChannel in = FileChannel.open(name)) {
+            return read(in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return a factory for the machines described by the compiled
+     *  configuration in the remaining bytes of DATA. */
+    static MachineFactory read(ByteBuffer data) {
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw error("not a compiled configuration");
+            }
+            Alphabet alpha = new Alphabet(readString(data, data.getInt()));
+            int n = alpha.size();
+            int numRotors = data.getInt(), pawls = data.getInt();
+            int count = data.getInt();
+            if (count < 0) {
+                throw error("invalid compiled configuration");
+            }
+            List<Rotor> rotors = new ArrayList<Rotor>(count);
+            for (int i = 0; i < count; i += 1) {
+                byte kind = data.get();
+                String rotorName = readString(data, data.getShort());
+                int[] forward = new int[n], inverse = new int[n];
+                readInts(data, forward);
+                readInts(data, inverse);
+                Permutation perm = new Permutation(forward, inverse, alpha);
+                switch (kind) {
+                case REFLECTOR -> rotors.add(new Reflector(rotorName, perm));
+                case FIXED -> rotors.add(new FixedRotor(rotorName, perm));
+                case MOVING -> {
+                    long[] mask = new long[(n + 63) >>> 6];
+                    data.asLongBuffer().get(mask);
+                    data.position(data.position() + mask.length * Long.BYTES);
+                    rotors.add(new MovingRotor(rotorName, perm, mask));
+                }
+                default -> throw error("invalid compiled configuration");
+                }
+            }
+            if (data.hasRemaining()) {
+                throw error("invalid compiled configuration");
+            }
+            return new MachineFactory(alpha, numRotors, pawls, rotors);
+        } catch (RuntimeException excp) {
+            if (excp instanceof EnigmaException) {
+                throw excp;
+            }
+            throw error("compiled configuration truncated");
+        }
+    }
+
+    /** Write the configuration of the machines made by FACTORY to the
+     *  file named NAME. */
+    static void write(MachineFactory factory, Path name) {
+        List<Rotor> rotors = factory.rotors();
+        Alphabet alpha = factory.alphabet();
+        int n = alpha.size();
+        int size = 6 * Integer.BYTES + n * Character.BYTES;
+        for (Rotor r : rotors) {
+            if (r.name().length() > Short.MAX_VALUE) {
+                throw error("rotor name too long to compile: %.20s...",
+                            r.name());
+            }
+            size += Byte.BYTES + Short.BYTES
+                + r.name().length() * Character.BYTES
+                + 2 * n * Integer.BYTES;
+            if (r.rotates()) {
+                size += ((n + 63) >>> 6) * Long.BYTES;
+            }
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(size);
+        data.putInt(MAGIC).putInt(VERSION).putInt(n);
+        for (int k = 0; k < n; k += 1) {
+            data.putChar(alpha.toChar(k));
+        }
+        data.putInt(factory.numRotors()).putInt(factory.numPawls());
+        data.putInt(rotors.size());
+        for (Rotor r : rotors) {
+            data.put(r.reflecting() ? REFLECTOR
+                     : r.rotates() ? MOVING : FIXED);
+            data.putShort((short) r.name().length());
+            for (int i = 0; i < r.name().length(); i += 1) {
+                data.putChar(r.name().charAt(i));
+            }
+            for (int k = 0; k < n; k += 1) {
+                data.putInt(r.permutation().permute(k));
+            }
+            for (int k = 0; k < n; k += 1) {
+                data.putInt(r.permutation().invert(k));
+            }
+            if (r.rotates()) {
+                for (long word : ((MovingRotor) r).notchMask()) {
+                    data.putLong(word);
+                }
+            }
+        }
+        data.flip();
+
+        try (FileChannel out = FileChannel.open(name,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return the next LEN chars of DATA as a string. */
+    private static String readString(ByteBuffer data, int len) {
+        if (len < 0 || len > data.remaining() / Character.BYTES) {
+            throw error("invalid compiled configuration");
+        }
+        char[] chars = new char[len];
+        data.asCharBuffer().get(chars);
+        data.position(data.position() + len * Character.BYTES);
+        return new String(chars);
+    }
+
+    /** Fill INTS from the next ints of DATA. */
+    private static void readInts(ByteBuffer data, int[] ints) {
+        data.asIntBuffer().get(ints);
+        data.position(data.position() + ints.length * Integer.BYTES);
+    }
+
+    /** First int of every compiled configuration: 0x89 followed by
+     *  "ENG".  As in PNG, the first byte has its high bit set and is
+     *  not a valid first byte in UTF-8, so that no text begins with it. */
+    static final int MAGIC = 0x89454e47;
+
+    /** Version of the format written. */
+    private static final int VERSION = 1;
+
+    /** Kind of a reflector. */
+    private static final byte REFLECTOR = 0;
+
+    /** Kind of a non-moving rotor. */
+    private static final byte FIXED = 1;
+
+    /** Kind of a moving rotor. */
+    private static final byte MOVING = 2;
+
+}
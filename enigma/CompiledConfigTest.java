@@ -0,0 +1,122 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author David Babazadeh
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final String SETTINGS1 =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Rotor> rotors = new ArrayList<>();
+        for (String name : new String[] { "B", "C" }) {
+            rotors.add(new Reflector(name,
+                    new Permutation(TestUtils.NAVALA.get(name), AZ)));
+        }
+        rotors.add(new FixedRotor("Beta",
+                new Permutation(TestUtils.NAVALA.get("Beta"), AZ)));
+        String[][] moving = { { "I", "Q" }, { "III", "V" }, { "IV", "J" },
+                              { "VI", "ZM" } };
+        for (String[] rotor : moving) {
+            rotors.add(new MovingRotor(rotor[0],
+                    new Permutation(TestUtils.NAVALA.get(rotor[0]), AZ),
+                    rotor[1]));
+        }
+        MachineFactory factory = new MachineFactory(AZ, 5, 3, rotors);
+
+        Path file = Files.createTempFile("enigma", ".bin");
+        try {
+            CompiledConfig.write(factory, file);
+            assertTrue(CompiledConfig.isCompiled(file));
+            MachineFactory loaded = CompiledConfig.read(file);
+            assertEquals(TestUtils.UPPER_STRING, alphabetString(loaded));
+            assertEquals(5, loaded.numRotors());
+            assertEquals(3, loaded.numPawls());
+            assertEquals(rotors.size(), loaded.rotors().size());
+            for (int i = 0; i < rotors.size(); i += 1) {
+                Rotor expected = rotors.get(i), actual = loaded.rotors().get(i);
+                assertEquals(expected.name(), actual.name());
+                assertEquals(expected.getClass(), actual.getClass());
+                assertEquals(expected.notches(), actual.notches());
+                for (int k = 0; k < AZ.size(); k += 1) {
+                    assertEquals(expected.permutation().permute(k),
+                                 actual.permutation().permute(k));
+                }
+            }
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                    loaded.convert(SETTINGS1, "FROMHISSHOULDERHIAWATHA"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTextNotCompiled() throws IOException {
+        Path file = Files.createTempFile("enigma", ".conf");
+        try {
+            Files.writeString(file, "ENGCABDFHIJKLMOPQRSTUVWXYZ\n"
+                              + "5 3\n");
+            assertFalse(CompiledConfig.isCompiled(file));
+            Files.write(file, new byte[] { (byte) 0x89, 'E', 'N', 'G' });
+            assertFalse(CompiledConfig.isCompiled(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testLongRotorName() throws IOException {
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B",
+                new Permutation(TestUtils.NAVALA.get("B"), AZ)));
+        for (String name : new String[] { "I", "II", "I".repeat(40000) }) {
+            rotors.add(new MovingRotor(name,
+                    new Permutation(TestUtils.NAVALA.get("I"), AZ), "Q"));
+        }
+        MachineFactory factory = new MachineFactory(AZ, 3, 2, rotors);
+        Path file = Files.createTempFile("enigma", ".bin");
+        try {
+            CompiledConfig.write(factory, file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTruncated() {
+        ByteBuffer data = ByteBuffer.allocate(12);
+        data.putInt(CompiledConfig.MAGIC).putInt(1).putInt(26).flip();
+        CompiledConfig.read(data);
+    }
+
+    /** Return the characters of FACTORY's alphabet, in order. */
+    private static String alphabetString(MachineFactory factory) {
+        String result = "";
+        for (int k = 0; k < factory.alphabet().size(); k += 1) {
+            result += factory.alphabet().toChar(k);
+        }
+        return result;
+    }
+
+}
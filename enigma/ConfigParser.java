@@ -0,0 +1,194 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A parser for the text form of a machine configuration: the alphabet,
+ *  the number of rotor slots, the number of pawls, and then each rotor's
+ *  name, type (M followed by its notches, N, or R) and cycles, all
+ *  separated by whitespace.  The text is scanned once, and each rotor's
+ *  cycles are compiled straight into permutation tables.  Errors are
+ *  reported with the line and column at which they were found.
+ *  @author David Babazadeh
+ */
+final class ConfigParser {
+
+    /** A parser for the configuration TEXT. */
+    ConfigParser(String text) {
+        _text = text;
+    }
+
+    /** Return a factory for the machines described by my text. */
+    MachineFactory parse() {
+        int start = skipWhitespace();
+        String chars = nextToken("configuration file truncated");
+        try {
+            _alphabet = new Alphabet(chars);
+        } catch (EnigmaException excp) {
+            throw errorAt(start, "%s", excp.getMessage());
+        }
+
+        start = skipWhitespace();
+        int numRotors = nextInt("invalid config: numRotors must be int");
+        int pawls = nextInt("invalid config: numPawls must be int");
+
+        List<Rotor> rotors = new ArrayList<Rotor>();
+        while (skipWhitespace() < _text.length()) {
+            rotors.add(readRotor());
+        }
+
+        try {
+            return new MachineFactory(_alphabet, numRotors, pawls, rotors);
+        } catch (EnigmaException excp) {
+            throw errorAt(start, "%s", excp.getMessage());
+        }
+    }
+
+    /** Return a rotor, reading its description from the current
+     *  position. */
+    private Rotor readRotor() {
+        int start = _pos;
+        String name = nextToken("bad rotor description");
+        int typeStart = skipWhitespace();
+        String type = nextToken("bad rotor description");
+        for (int i = 1; type.charAt(0) == 'M' && i < type.length(); i += 1) {
+            if (!_alphabet.contains(type.charAt(i))) {
+                throw errorAt(typeStart + i, "invalid notch %c",
+                              type.charAt(i));
+            }
+        }
+
+        int n = _alphabet.size();
+        int[] forward = new int[n], inverse = new int[n];
+        Arrays.fill(forward, -1);
+        Arrays.fill(inverse, -1);
+        while (skipWhitespace() < _text.length()
+               && _text.charAt(_pos) == '(') {
+            readCycles(forward, inverse);
+        }
+        for (int k = 0; k < n; k += 1) {
+            if (forward[k] == -1) {
+                forward[k] = inverse[k] = k;
+            }
+        }
+        Permutation perm = new Permutation(forward, inverse, _alphabet);
+
+        try {
+            return switch (type.charAt(0)) {
+            case 'M' -> new MovingRotor(name, perm, type.substring(1));
+            case 'N' -> new FixedRotor(name, perm);
+            default -> new Reflector(name, perm);
+            };
+        } catch (EnigmaException excp) {
+            throw errorAt(start, "%s", excp.getMessage());
+        }
+    }
+
+    /** Read a token of one or more cycles "(cc...)(cc...)..." at the
+     *  current position, adding them to the permutation tables FORWARD
+     *  and INVERSE. */
+    private void readCycles(int[] forward, int[] inverse) {
+        int len = _text.length();
+        while (_pos < len && _text.charAt(_pos) == '(') {
+            _pos += 1;
+            int first = -1, prev = -1;
+            while (true) {
+                char ch = _pos < len ? _text.charAt(_pos) : ' ';
+                if (Character.isWhitespace(ch)) {
+                    throw errorAt(_pos, "invalid cycle: missing )");
+                } else if (ch == ')') {
+                    break;
+                } else if (ch == '(') {
+                    throw errorAt(_pos, "invalid cycle: unexpected (");
+                } else if (!_alphabet.contains(ch)) {
+                    throw errorAt(_pos, "invalid cycle: character %c not "
+                                  + "in alphabet", ch);
+                }
+                int k = _alphabet.toInt(ch);
+                if (inverse[k] != -1 || k == first) {
+                    throw errorAt(_pos, "invalid cycle: repeated "
+                                  + "character %c", ch);
+                }
+                if (prev == -1) {
+                    first = k;
+                } else {
+                    forward[prev] = k;
+                    inverse[k] = prev;
+                }
+                prev = k;
+                _pos += 1;
+            }
+            if (first != -1) {
+                forward[prev] = first;
+                inverse[first] = prev;
+            }
+            _pos += 1;
+        }
+        if (_pos < len && !Character.isWhitespace(_text.charAt(_pos))) {
+            throw errorAt(_pos, "invalid cycle: unexpected %c",
+                          _text.charAt(_pos));
+        }
+    }
+
+    /** Skip whitespace, returning the resulting position. */
+    private int skipWhitespace() {
+        int len = _text.length();
+        while (_pos < len && Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        return _pos;
+    }
+
+    /** Return the next whitespace-delimited token, reporting MISSING as
+     *  an error if there is none. */
+    private String nextToken(String missing) {
+        int start = skipWhitespace(), len = _text.length();
+        if (start == len) {
+            throw errorAt(start, missing);
+        }
+        while (_pos < len && !Character.isWhitespace(_text.charAt(_pos))) {
+            _pos += 1;
+        }
+        return _text.substring(start, _pos);
+    }
+
+    /** Return the next token as an integer, reporting INVALID as an error
+     *  if it is missing or is not one. */
+    private int nextInt(String invalid) {
+        int start = skipWhitespace();
+        try {
+            return Integer.parseInt(nextToken(invalid));
+        } catch (NumberFormatException excp) {
+            throw errorAt(start, invalid);
+        }
+    }
+
+    /** Return an exception reporting the error described by MSGFORMAT
+     *  and ARGUMENTS, as for String.format, at position POS of my
+     *  text. */
+    private EnigmaException errorAt(int pos, String msgFormat,
+                                    Object... arguments) {
+        int line = 1, lineStart = 0;
+        for (int i = 0; i < pos; i += 1) {
+            if (_text.charAt(i) == '\n') {
+                line += 1;
+                lineStart = i + 1;
+            }
+        }
+        return error("line %d, column %d: %s", line, pos - lineStart + 1,
+                     String.format(msgFormat, arguments));
+    }
+
+    /** The configuration being parsed. */
+    private final String _text;
+
+    /** Position of the next character of _text to be read. */
+    private int _pos;
+
+    /** Alphabet of the configuration, once read. */
+    private Alphabet _alphabet;
+
+}
@@ -0,0 +1,70 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ConfigParser class.
+ *  @author David Babazadeh
+ */
+public class ConfigParserTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n 5 3\n"
+        + " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "   (RX) (SZ) (TV)\n";
+
+    /** Return the message of the error reported when parsing TEXT. */
+    private static String parseError(String text) {
+        try {
+            new ConfigParser(text).parse();
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        }
+        fail("no error reported for " + text);
+        return null;
+    }
+
+    @Test
+    public void testParse() {
+        MachineFactory factory = new ConfigParser(CONFIG).parse();
+        assertEquals(26, factory.alphabet().size());
+        assertEquals(5, factory.numRotors());
+        assertEquals(3, factory.numPawls());
+        assertEquals(5, factory.rotors().size());
+        Rotor b = factory.rotors().get(4);
+        assertTrue(b instanceof Reflector);
+        assertEquals(25, b.permutation().permute(18));
+        assertEquals("V", factory.rotors().get(1).notches());
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                factory.convert("* B Beta III IV I AXLE (HQ) (EX) (IP) "
+                                + "(TR) (BY)", "FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testErrorPositions() {
+        assertEquals("line 2, column 4: invalid config: numPawls must be int",
+                     parseError("AB\n 2 x\n"));
+        assertEquals("line 3, column 5: invalid notch Z",
+                     parseError("ABC\n 3 1\n I MZ (AB)\n"));
+        assertEquals("line 3, column 12: invalid cycle: repeated "
+                     + "character A",
+                     parseError("ABC\n 3 1\n I M (AB)(CA)\n"));
+        assertEquals("line 2, column 5: invalid cycle: missing )",
+                     parseError("ABC 3 1 I M\n (AB\n"));
+        assertEquals("line 1, column 14: invalid cycle: character D not "
+                     + "in alphabet", parseError("ABC 3 1 I R (D)"));
+    }
+
+}
@@ -0,0 +1,123 @@
+package enigma;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Finds the positions of a ciphertext at which a crib may lie.  Since
+ *  a machine never encrypts a character to itself, a crib cannot be
+ *  placed where any of its characters faces the same ciphertext
+ *  character.  Texts are held as bytes of alphabet indices and compared
+ *  eight positions at a time: the ciphertext is read as little-endian
+ *  longs, each crib character is XORed against the eight ciphertext
+ *  characters it would face at eight consecutive offsets, and the zero
+ *  bytes of the result, which mark clashes, are found with a few word
+ *  operations.  A block of offsets is abandoned as soon as all eight
+ *  have clashed.
+ *  @author David Babazadeh
+ */
+final class CribDrag {
+
+    /** Largest alphabet whose indices fit in a byte. */
+    static final int MAX_ALPHABET = 256;
+
+    /** A dragger for CRIB (whose whitespace is ignored), whose characters
+     *  must be in ALPHA, which must have at most MAX_ALPHABET
+     *  characters. */
+    CribDrag(Alphabet alpha, String crib) {
+        if (alpha.size() > MAX_ALPHABET) {
+            throw error("alphabet too large to drag a crib");
+        }
+        _alphabet = alpha;
+        _crib = bytes(alpha.indices(crib));
+        if (_crib.length == 0) {
+            throw error("empty crib");
+        }
+        _broadcast = new long[_crib.length];
+        for (int i = 0; i < _crib.length; i += 1) {
+            _broadcast[i] = (_crib[i] & 0xffL) * LOW;
+        }
+    }
+
+    /** Return the length of my crib. */
+    int length() {
+        return _crib.length;
+    }
+
+    /** Return the offsets, in increasing order, at which my crib may lie
+     *  in CIPHERTEXT, ignoring whitespace. */
+    int[] offsets(String ciphertext) {
+        byte[] text = bytes(_alphabet.indices(ciphertext));
+        return offsets(text, 0, text.length);
+    }
+
+    /** Return the offsets from OFF, in increasing order, at which my crib
+     *  may lie in the LEN characters of TEXT starting at OFF, which are
+     *  given as alphabet indices. */
+    int[] offsets(byte[] text, int off, int len) {
+        if (off < 0 || len < 0 || off + len > text.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int m = _crib.length, count = len - m + 1;
+        if (count <= 0) {
+            return new int[0];
+        }
+        int[] result = new int[count];
+        int n = 0, o = 0;
+        for (; o + Long.BYTES <= count; o += Long.BYTES) {
+            long clash = 0;
+            for (int i = 0; i < m && clash != HIGH; i += 1) {
+                long x = (long) LONGS.get(text, off + o + i) ^ _broadcast[i];
+                clash |= ~(((x & ~HIGH) + ~HIGH) | x | ~HIGH);
+            }
+            for (long ok = ~clash & HIGH; ok != 0; ok &= ok - 1) {
+                result[n] = o + Long.numberOfTrailingZeros(ok) / Byte.SIZE;
+                n += 1;
+            }
+        }
+        for (; o < count; o += 1) {
+            int i = 0;
+            while (i < m && text[off + o + i] != _crib[i]) {
+                i += 1;
+            }
+            if (i == m) {
+                result[n] = o;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Return INDICES as bytes. */
+    private static byte[] bytes(int[] indices) {
+        byte[] result = new byte[indices.length];
+        for (int i = 0; i < indices.length; i += 1) {
+            result[i] = (byte) indices[i];
+        }
+        return result;
+    }
+
+    /** Reads the longs of a byte array, first byte lowest. */
+    private static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class,
+                                             ByteOrder.LITTLE_ENDIAN);
+
+    /** A long with each byte 1. */
+    private static final long LOW = 0x0101010101010101L;
+
+    /** A long with the high bit of each byte set. */
+    private static final long HIGH = 0x8080808080808080L;
+
+    /** Alphabet of my crib. */
+    private final Alphabet _alphabet;
+
+    /** My crib, as alphabet indices. */
+    private final byte[] _crib;
+
+    /** _broadcast[I] has every byte equal to _crib[I]. */
+    private final long[] _broadcast;
+
+}
@@ -0,0 +1,68 @@
+package enigma;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CribDrag class.
+ *  @author David Babazadeh
+ */
+public class CribDragTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    /** Return the offsets at which CRIB may lie in TEXT, found one
+     *  character at a time. */
+    private static int[] slowOffsets(String text, String crib) {
+        int[] result = new int[Math.max(0, text.length() - crib.length()
+                                        + 1)];
+        int n = 0;
+        for (int o = 0; o < result.length; o += 1) {
+            int i = 0;
+            while (i < crib.length()
+                   && text.charAt(o + i) != crib.charAt(i)) {
+                i += 1;
+            }
+            if (i == crib.length()) {
+                result[n] = o;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    @Test
+    public void testOffsets() {
+        CribDrag drag = new CribDrag(AZ, "AB C");
+        assertEquals(3, drag.length());
+        assertArrayEquals(new int[] { 1, 3, 4, 6, 7 },
+                          drag.offsets("ABC BCABCAACB"));
+        assertArrayEquals(new int[0], drag.offsets("AB"));
+        byte[] text = { 1, 2, 0, 1, 2, 0, 1 };
+        assertArrayEquals(new int[] { 0, 1, 3, 4 },
+                          drag.offsets(text, 0, 7));
+        assertArrayEquals(new int[] { 0, 2, 3 }, drag.offsets(text, 1, 6));
+    }
+
+    @Test
+    public void testLongText() {
+        String plain = KeySearchTest.PLAIN;
+        MachineFactory factory = KeySearchTest.factory("I", "II", "III");
+        String cipher = factory.convert("* B III II I AAA", plain);
+        for (int len = 1; len < 40; len += 7) {
+            String crib = plain.substring(100, 100 + len);
+            int[] offsets = new CribDrag(AZ, crib).offsets(cipher);
+            assertArrayEquals(slowOffsets(cipher, crib), offsets);
+            assertTrue(Arrays.binarySearch(offsets, 100) >= 0);
+        }
+    }
+
+}
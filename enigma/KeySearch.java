@@ -0,0 +1,231 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only search for the wheel order and rotor settings of
+ *  a message, with the rings at their 0 settings and no plugboard.
+ *  Every wheel order that can be drawn from a factory's rotors is tried
+ *  at every setting of its rotors, and each trial decryption is scored
+ *  by its index of coincidence, which is highest for text with the
+ *  uneven letter frequencies of a natural language.  The settings of
+ *  the moving rotors are tried together through one KeystreamTable per
+ *  wheel order and setting of the non-moving rotors, so that trying a
+ *  candidate allocates nothing and costs one table step per character.
+ *  @author David Babazadeh
+ */
+final class KeySearch {
+
+    /** A search among the wheel orders and settings of the machines
+     *  made by FACTORY, whose alphabet must have at most 256
+     *  characters. */
+    KeySearch(MachineFactory factory) {
+        _factory = factory;
+        _identity = new Permutation("", factory.alphabet());
+        _machines = ThreadLocal.withInitial(factory::newMachine);
+        _orders = SearchSpace.wheelOrders(factory);
+        if (_orders.isEmpty()) {
+            throw error("no wheel orders can be made from the rotors");
+        }
+    }
+
+    /** Return the wheel orders I search, each giving the names of the
+     *  rotors from the reflector to the fast rotor. */
+    List<String[]> wheelOrders() {
+        return _orders;
+    }
+
+    /** Return the best COUNT candidates for the key of CIPHERTEXT, best
+     *  first, searching in the common pool. */
+    List<Candidate> search(String ciphertext, int count) {
+        return search(ciphertext, count, ForkJoinPool.commonPool());
+    }
+
+    /** Return the best COUNT candidates for the key of CIPHERTEXT, best
+     *  first, searching in POOL.  Whitespace in CIPHERTEXT is ignored;
+     *  its other characters must be in the alphabet. */
+    List<Candidate> search(String ciphertext, int count, ForkJoinPool pool) {
+        if (count < 1) {
+            throw error("must ask for at least one candidate");
+        }
+        int[] text = _factory.alphabet().indices(ciphertext);
+        int fixedSettings = SearchSpace.fixedSettings(_factory);
+
+        List<ForkJoinTask<Candidate[]>> tasks = new ArrayList<>();
+        for (int order = 0; order < _orders.size(); order += 1) {
+            for (int f = 0; f < fixedSettings; f += 1) {
+                int o = order, settings = f;
+                tasks.add(ForkJoinTask.adapt(
+                    () -> search(o, settings, text, count)));
+            }
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        List<Candidate> result = new ArrayList<>();
+        for (ForkJoinTask<Candidate[]> task : tasks) {
+            result.addAll(Arrays.asList(task.join()));
+        }
+        result.sort(BEST_FIRST);
+        return new ArrayList<>(result.subList(0, Math.min(count,
+                                                          result.size())));
+    }
+
+    /** Return the best COUNT candidates for TEXT, given as alphabet
+     *  indices, using wheel order ORDER with the non-moving rotors at
+     *  the settings whose digits in base alphabet size are those of
+     *  FIXED, trying every setting of the moving rotors. */
+    private Candidate[] search(int order, int fixed, int[] text, int count) {
+        Machine mach = _machines.get();
+        int size = _factory.alphabet().size();
+        mach.insertRotors(_orders.get(order));
+        mach.setRotors(SearchSpace.setting(_factory, fixed, 0));
+        mach.setPlugboard(_identity);
+        KeystreamTable table = new KeystreamTable(mach);
+
+        long[] scores = new long[count];
+        int[] states = new int[count];
+        int[] counts = new int[size];
+        int found = 0;
+        for (int state = 0; state < table.numStates(); state += 1) {
+            table.count(state, text, 0, text.length, counts);
+            long score = 0;
+            for (int k = 0; k < size; k += 1) {
+                score += (long) counts[k] * (counts[k] - 1);
+                counts[k] = 0;
+            }
+            if (found < count) {
+                found += 1;
+                siftUp(scores, states, found - 1, score, state);
+            } else if (score > scores[0]) {
+                siftDown(scores, states, found, score, state);
+            }
+        }
+
+        double pairs = (double) text.length * (text.length - 1);
+        Candidate[] result = new Candidate[found];
+        for (int i = 0; i < found; i += 1) {
+            String setting = SearchSpace.setting(_factory, fixed, states[i]);
+            result[i] = new Candidate(_orders.get(order), setting,
+                                      pairs == 0 ? 0 : scores[i] / pairs,
+                                      order, fixed, states[i]);
+        }
+        return result;
+    }
+
+    /** Add SCORE and STATE at position K of the min-heap SCORES, STATES
+     *  of K + 1 entries, whose first K entries form a heap. */
+    private static void siftUp(long[] scores, int[] states, int k,
+                               long score, int state) {
+        while (k > 0 && scores[(k - 1) / 2] > score) {
+            scores[k] = scores[(k - 1) / 2];
+            states[k] = states[(k - 1) / 2];
+            k = (k - 1) / 2;
+        }
+        scores[k] = score;
+        states[k] = state;
+    }
+
+    /** Replace the smallest entry of the min-heap SCORES, STATES of N
+     *  entries with SCORE and STATE. */
+    private static void siftDown(long[] scores, int[] states, int n,
+                                 long score, int state) {
+        int k = 0;
+        while (2 * k + 1 < n) {
+            int child = 2 * k + 1;
+            if (child + 1 < n && scores[child + 1] < scores[child]) {
+                child += 1;
+            }
+            if (scores[child] >= score) {
+                break;
+            }
+            scores[k] = scores[child];
+            states[k] = states[child];
+            k = child;
+        }
+        scores[k] = score;
+        states[k] = state;
+    }
+
+    /** A possible key found by a search. */
+    static final class Candidate {
+
+        /** A candidate with wheel order ROTORS and rotor settings
+         *  SETTING, whose decryption has index of coincidence SCORE,
+         *  found at wheel order number ORDER with non-moving rotor
+         *  settings number FIXED and moving rotor state STATE. */
+        private Candidate(String[] rotors, String setting, double score,
+                          int order, int fixed, int state) {
+            _rotors = rotors.clone();
+            _setting = setting;
+            _score = score;
+            _order = order;
+            _fixed = fixed;
+            _state = state;
+        }
+
+        /** Return the names of my rotors, from the reflector on. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return the settings of my rotors, leftmost first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the index of coincidence of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Return a settings line that sets a machine to me. */
+        String settingsLine() {
+            return "* " + String.join(" ", _rotors) + " " + _setting;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.5f)", settingsLine(), _score);
+        }
+
+        /** Names of my rotors. */
+        private final String[] _rotors;
+
+        /** Settings of my rotors. */
+        private final String _setting;
+
+        /** Index of coincidence of my decryption. */
+        private final double _score;
+
+        /** Numbers of my wheel order, non-moving settings and moving
+         *  state, which order candidates with equal scores. */
+        private final int _order, _fixed, _state;
+    }
+
+    /** Orders candidates from the highest score down, and then in the
+     *  order in which they are searched. */
+    private static final Comparator<Candidate> BEST_FIRST =
+        Comparator.comparingDouble((Candidate c) -> -c._score)
+        .thenComparingInt(c -> c._order)
+        .thenComparingInt(c -> c._fixed)
+        .thenComparingInt(c -> c._state);
+
+    /** Source of my machines. */
+    private final MachineFactory _factory;
+
+    /** The plugboard that leaves every character alone. */
+    private final Permutation _identity;
+
+    /** Each worker thread's machine. */
+    private final ThreadLocal<Machine> _machines;
+
+    /** The wheel orders searched. */
+    private final List<String[]> _orders;
+
+}
@@ -0,0 +1,71 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author David Babazadeh
+ */
+public class KeySearchTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    static final String PLAIN =
+        "SHOULDYOUASKMEWHENCETHESESTORIESWHENCETHESELEGENDSANDTRADITIONS"
+        + "WITHTHEODORSOFTHEFORESTWITHTHEDEWANDDAMPOFMEADOWSWITHTHECURLING"
+        + "SMOKEOFWIGWAMSWITHTHERUSHINGOFGREATRIVERSWITHTHEIRFREQUENT"
+        + "REPETITIONSANDTHEIRWILDREVERBERATIONSASOFTHUNDERINTHEMOUNTAINS"
+        + "ISHOULDANSWERISHOULDTELLYOUFROMTHEFORESTSANDTHEPRAIRIESFROMTHE"
+        + "GREATLAKESOFTHENORTHLANDFROMTHELANDOFTHEOJIBWAYS";
+
+    /** Return a factory for a three-rotor machine with reflector B and
+     *  moving rotors NAMES, with the notches of the naval rotors. */
+    static MachineFactory factory(String... names) {
+        String notches = "QEVJZ";
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B",
+                new Permutation(TestUtils.NAVALA.get("B"), AZ)));
+        for (String name : names) {
+            int k = List.of("I", "II", "III", "IV", "V").indexOf(name);
+            rotors.add(new MovingRotor(name,
+                    new Permutation(TestUtils.NAVALA.get(name), AZ),
+                    notches.substring(k, k + 1)));
+        }
+        return new MachineFactory(AZ, 4, 3, rotors);
+    }
+
+    @Test
+    public void testWheelOrders() {
+        KeySearch search = new KeySearch(factory("I", "II", "III", "IV",
+                                                 "V"));
+        assertEquals(60, search.wheelOrders().size());
+        assertArrayEquals(new String[] { "B", "I", "II", "III" },
+                          search.wheelOrders().get(0));
+    }
+
+    @Test
+    public void testSearch() {
+        MachineFactory factory = factory("I", "II", "III");
+        String cipher = factory.convert("* B II I III KDO", PLAIN);
+        List<KeySearch.Candidate> best =
+            new KeySearch(factory).search(cipher, 5);
+        assertEquals(5, best.size());
+        assertEquals("* B II I III KDO", best.get(0).settingsLine());
+        for (int i = 1; i < best.size(); i += 1) {
+            assertTrue(best.get(i - 1).score() >= best.get(i).score());
+        }
+        assertEquals(PLAIN,
+                factory.convert(best.get(0).settingsLine(), cipher));
+    }
+
+}
@@ -0,0 +1,240 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The complete substitution performed by a machine at each position of
+ *  its moving rotors, for a fixed choice of rotors, ring settings,
+ *  non-moving rotor settings, and plugboard.  States are numbered by
+ *  reading the settings of the moving rotors as the digits of a number
+ *  in base alphabet size, the fast rotor being the least significant.
+ *  Converting a character then costs one lookup of the next state and
+ *  one lookup of the substitution, and the same table serves every
+ *  message that uses the same wheel order, rings and plugboard.
+ *  @author David Babazadeh
+ */
+final class KeystreamTable {
+
+    /** Largest number of substitution entries I will build. */
+    static final int MAX_ENTRIES = 1 << 28;
+
+    /** A table for the rotors currently inserted in MACH, at their
+     *  current ring settings, with the non-moving rotors at their
+     *  current settings and MACH's plugboard. */
+    KeystreamTable(Machine mach) {
+        _size = mach.alphabet().size();
+        _pawls = mach.numPawls();
+        if (_size > 256) {
+            throw error("alphabet too large for a keystream table");
+        }
+        long states = 1;
+        for (int i = 0; i < _pawls; i += 1) {
+            states *= _size;
+        }
+        if (states * _size > MAX_ENTRIES) {
+            throw error("too many rotor states for a keystream table");
+        }
+        _numStates = (int) states;
+        _alphabet = mach.alphabet();
+        _moving = new Rotor[_pawls];
+        _rings = new int[_pawls];
+        for (int i = 0; i < _pawls; i += 1) {
+            _moving[i] = mach.getRotor(mach.numRotors() - _pawls + i);
+            _rings[i] = mach.ring(mach.numRotors() - _pawls + i);
+        }
+        _table = new byte[_numStates * _size];
+        _next = new int[_numStates];
+        build(mach);
+    }
+
+    /** Return the number of states. */
+    int numStates() {
+        return _numStates;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the state of the moving rotors of MACH, which must hold
+     *  the rotors I was built from. */
+    int state(Machine mach) {
+        int state = 0;
+        for (int i = mach.numRotors() - _pawls; i < mach.numRotors(); i += 1) {
+            state = state * _size + mach.setting(i);
+        }
+        return state;
+    }
+
+    /** Return the state in which the moving rotors, from left to right,
+     *  are at the characters of SETTINGS. */
+    int state(String settings) {
+        if (settings.length() != _pawls) {
+            throw error("invalid number of rotor positions");
+        }
+        int state = 0;
+        for (int i = 0; i < _pawls; i += 1) {
+            state = state * _size + _alphabet.toInt(settings.charAt(i));
+        }
+        return state;
+    }
+
+    /** Return the state reached from STATE by one keypress. */
+    int next(int state) {
+        return _next[state];
+    }
+
+    /** Return a table whose element S is the state reached from state S
+     *  by N >= 0 keypresses.  It is built by repeated squaring of the
+     *  next-state table, in time proportional to numStates() times the
+     *  logarithm of N. */
+    int[] jump(long n) {
+        int[] result = new int[_numStates];
+        for (int s = 0; s < _numStates; s += 1) {
+            result[s] = s;
+        }
+        int[] power = _next.clone(), square = new int[_numStates];
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                for (int s = 0; s < _numStates; s += 1) {
+                    result[s] = power[result[s]];
+                }
+            }
+            n >>>= 1;
+            if (n > 0) {
+                for (int s = 0; s < _numStates; s += 1) {
+                    square[s] = power[power[s]];
+                }
+                int[] tmp = power;
+                power = square;
+                square = tmp;
+            }
+        }
+        return result;
+    }
+
+    /** Return the conversion of C (an index into the alphabet) with
+     *  the moving rotors in STATE. */
+    int convert(int state, int c) {
+        return _table[state * _size + c] & 0xff;
+    }
+
+    /** Store the conversion of the LEN characters of IN starting at OFF
+     *  into OUT starting at OUTOFF, starting in STATE and advancing the
+     *  rotors before each character, as Machine.convert does.  Returns
+     *  the final state. */
+    int convert(int state, char[] in, int off, int len,
+                char[] out, int outOff) {
+        Alphabet alpha = _alphabet;
+        byte[] table = _table;
+        int[] next = _next;
+        int size = _size;
+        for (int i = 0; i < len; i += 1) {
+            state = next[state];
+            int c = alpha.toInt(in[off + i]);
+            out[outOff + i] = alpha.toChar(table[state * size + c] & 0xff);
+        }
+        return state;
+    }
+
+    /** Starting in STATE, advance the rotors before each of the LEN
+     *  characters of TEXT starting at OFF, given as indices into the
+     *  alphabet, and add one to COUNTS[P] for each resulting conversion
+     *  P, without storing the conversions.  Returns the final state. */
+    int count(int state, int[] text, int off, int len, int[] counts) {
+        byte[] table = _table;
+        int[] next = _next;
+        int size = _size;
+        for (int i = 0; i < len; i += 1) {
+            state = next[state];
+            counts[table[state * size + text[off + i]] & 0xff] += 1;
+        }
+        return state;
+    }
+
+    /** Fill in the substitution and next-state tables from MACH. */
+    private void build(Machine mach) {
+        int n = mach.numRotors(), moving = n - _pawls;
+        Permutation plugboard = mach.plugboard();
+        int[] core = new int[_size];
+        for (int k = 0; k < _size; k += 1) {
+            int c = k;
+            for (int i = moving - 1; i > 0; i -= 1) {
+                c = mach.getRotor(i).convertForward(c, mach.setting(i));
+            }
+            for (int i = 0; i < moving; i += 1) {
+                c = mach.getRotor(i).convertBackward(c, mach.setting(i));
+            }
+            core[k] = c;
+        }
+
+        int[] posns = new int[_pawls];
+        for (int state = 0; state < _numStates; state += 1) {
+            int base = state * _size;
+            for (int k = 0; k < _size; k += 1) {
+                int c = plugboard.permute(k);
+                for (int i = _pawls - 1; i >= 0; i -= 1) {
+                    c = _moving[i].convertForward(c, posns[i]);
+                }
+                c = core[c];
+                for (int i = 0; i < _pawls; i += 1) {
+                    c = _moving[i].convertBackward(c, posns[i]);
+                }
+                _table[base + k] = (byte) plugboard.permute(c);
+            }
+            _next[state] = successor(posns);
+            for (int i = _pawls - 1; i >= 0; i -= 1) {
+                posns[i] += 1;
+                if (posns[i] < _size) {
+                    break;
+                }
+                posns[i] = 0;
+            }
+        }
+    }
+
+    /** Return the state following the one in which my moving rotors
+     *  are at POSNS, stepping them as Machine does (including the
+     *  double step of the middle rotors). */
+    private int successor(int[] posns) {
+        int state = 0;
+        for (int i = 0; i < _pawls; i += 1) {
+            boolean advance = i == _pawls - 1
+                || _moving[i + 1].atNotch(posns[i + 1], _rings[i + 1])
+                || (i > 0 && _moving[i].atNotch(posns[i], _rings[i]));
+            int p = advance ? posns[i] + 1 : posns[i];
+            state = state * _size + (p == _size ? 0 : p);
+        }
+        return state;
+    }
+
+    /** Alphabet of my machine. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Number of moving rotors. */
+    private final int _pawls;
+
+    /** Number of states of the moving rotors. */
+    private final int _numStates;
+
+    /** The moving rotors, from left to right. */
+    private final Rotor[] _moving;
+
+    /** The ring settings of _moving. */
+    private final int[] _rings;
+
+    /** _table[S * _size + C] is the conversion of C in state S. */
+    private final byte[] _table;
+
+    /** _next[S] is the state following state S. */
+    private final int[] _next;
+
+}
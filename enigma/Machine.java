@@ -1,12 +1,23 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static enigma.EnigmaException.*;
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  A machine never
+ *  changes the rotors it is given; the settings and ring settings of the
+ *  rotors in its slots are its own, so any number of machines, in any
+ *  number of threads, may share one collection of rotors.
  *  @author David Babazadeh
  */
 class Machine {
@@ -16,20 +27,41 @@ class Machine {
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, catalog(allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls.  CATALOG maps the names of all
+     *  the available rotors to the rotors, and is not modified, so that
+     *  it may be shared. */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            Map<String, Rotor> catalog) {
 
         if (numRotors - pawls < 1 || numRotors < 2) {
             throw error("invalid machine: number of pawls or rotors");
-        } else if (allRotors.size() < numRotors) {
+        } else if (catalog.size() < numRotors) {
             throw error("invalid machine: too many slots for numRotors");
         }
 
         _alphabet = alpha;
         _rotors = new Rotor[numRotors];
+        _settings = new int[numRotors];
+        _rings = new int[numRotors];
+        _advances = new boolean[numRotors];
+        _traceSettings = new int[numRotors - 1];
+        _tracer = Tracer.NONE;
         _pawls = pawls;
-        _allRotors = new HashMap<String, Rotor>(allRotors.size());
+        _allRotors = catalog;
+    }
+
+    /** Return a map from the names of ALLROTORS to the rotors. */
+    static Map<String, Rotor> catalog(Collection<Rotor> allRotors) {
+        HashMap<String, Rotor> catalog =
+            new HashMap<String, Rotor>(allRotors.size() * 2);
         for (Rotor r : allRotors) {
-            _allRotors.put(r.name(), r);
+            catalog.put(r.name(), r);
         }
+        return catalog;
     }
 
     /** Return the number of rotor slots I have. */
@@ -49,6 +81,16 @@ class Machine {
         return _rotors[k];
     }
 
+    /** Return the current setting of Rotor #K. */
+    int setting(int k) {
+        return _settings[k];
+    }
+
+    /** Return the ring setting of Rotor #K. */
+    int ring(int k) {
+        return _rings[k];
+    }
+
     Alphabet alphabet() {
         return _alphabet;
     }
@@ -84,6 +126,9 @@ class Machine {
                 throw error("invalid or repeated rotor input %s", rotors[i]);
             }
         }
+        Arrays.fill(_settings, 0);
+        Arrays.fill(_rings, 0);
+        _core = null;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -102,9 +147,10 @@ class Machine {
                         posn);
             }
 
-            _rotors[i].set(posn);
-            _rotors[i].setRing(0);
+            _settings[i] = alphabet().toInt(posn);
+            _rings[i] = 0;
         }
+        _core = null;
     }
 
     /** Set my rotors according to SETTING and RINGSTELLUNG,
@@ -115,17 +161,42 @@ class Machine {
         if (ringstellung.length() != numRotors() - 1) {
             throw error("invalid number of rotor positions");
         }
+        setRotors(setting);
+        int size = alphabet().size();
+        for (int i = 1; i < _rotors.length; i += 1) {
+            int ring = alphabet().toInt(ringstellung.charAt(i - 1));
+            _settings[i] = (_settings[i] - ring + size) % size;
+            _rings[i] = ring;
+        }
+    }
 
-        String rSetting = "";
-        for (int i = 0; i < setting.length(); i++) {
-            rSetting += alphabet().toChar((alphabet().toInt(setting.charAt(i))
-                    - alphabet().toInt(ringstellung.charAt(i))
-                    + alphabet().size()) % alphabet().size());
+    /** Set me according to the settings line SETTINGS: an asterisk,
+     *  the names of my rotors, their settings, optionally their ring
+     *  settings, and the plugboard cycles. */
+    void setUp(String settings) {
+        String[] settingsArr = settings.split(" ");
+        if (!Objects.equals(settingsArr[0], "*")) {
+            throw error("invalid settings line: must begin with *");
+        } else if (settingsArr.length < numRotors() + 2) {
+            throw error("invalid settings: requires %d arguments",
+                    numRotors() + 2);
         }
-        setRotors(rSetting);
 
-        for (int i = 0; i < setting.length(); i++) {
-            _rotors[i + 1].setRing(ringstellung.charAt(i));
+        insertRotors(Arrays.copyOfRange(settingsArr, 1, numRotors() + 1));
+
+        if (settingsArr.length > numRotors() + 2
+                && !settingsArr[numRotors() + 2].contains("(")) {
+            setRotors(settingsArr[numRotors() + 1],
+                    settingsArr[numRotors() + 2]);
+        } else {
+            setRotors(settingsArr[numRotors() + 1]);
+        }
+
+        if (!settings.contains("(")) {
+            setPlugboard(new Permutation("", _alphabet));
+        } else {
+            setPlugboard(new Permutation(
+                    settings.substring(settings.indexOf('(')), _alphabet));
         }
     }
 
@@ -139,70 +210,415 @@ class Machine {
         _plugboard = plugboard;
     }
 
+    /** Return true iff I am in compiled mode. */
+    boolean compiled() {
+        return _compiled;
+    }
+
+    /** Turn compiled mode on iff COMPILED.  In compiled mode, the
+     *  rotors that never move between steps (the reflector and the
+     *  non-moving rotors) are applied as a single precomposed table,
+     *  rebuilt whenever the rotors are inserted or set. */
+    void setCompiled(boolean compiled) {
+        _compiled = compiled;
+        _core = null;
+    }
+
+    /** Return the tracer receiving my conversions. */
+    Tracer tracer() {
+        return _tracer;
+    }
+
+    /** Report each subsequent conversion to TRACER. */
+    void setTracer(Tracer tracer) {
+        _tracer = tracer;
+        _tracing = tracer.enabled();
+    }
+
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine.  */
     int convert(int c) {
         advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
-            }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
+        if (_tracing) {
+            return convertTraced(c);
         }
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
-        }
-        c = applyRotors(c);
+        c = _compiled ? applyCompiledRotors(c) : applyRotors(c);
+        return plugboard().permute(c);
+    }
+
+    /** Returns the result of converting C, as for convert, reporting
+     *  each stage to my tracer. The rotors must already have been
+     *  advanced. */
+    private int convertTraced(int c) {
+        System.arraycopy(_settings, 1, _traceSettings, 0,
+                         _traceSettings.length);
+        _tracer.keypress(_traceSettings, c);
         c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
+        _tracer.stage(c);
+        for (int i = _rotors.length - 1; i > 0; i -= 1) {
+            c = _rotors[i].convertForward(c, _settings[i]);
+            _tracer.stage(c);
         }
+        for (int i = 0; i < _rotors.length; i += 1) {
+            c = _rotors[i].convertBackward(c, _settings[i]);
+            _tracer.stage(c);
+        }
+        c = plugboard().permute(c);
+        _tracer.end(c);
         return c;
     }
 
     /** Advance all rotors to their next position. */
     private void advanceRotors() {
-        int[] advances = new int[_rotors.length];
-        for (int i = _rotors.length - _pawls + 1; i < _rotors.length; i += 1) {
-            if (_rotors[i].atNotch()) {
-                advances[i] += 1;
-                advances[i - 1] += 1;
+        if (_pawls == 0) {
+            return;
+        }
+        boolean[] advances = _advances;
+        int[] settings = _settings;
+        int fast = _rotors.length - 1;
+        for (int i = _rotors.length - _pawls; i < fast; i += 1) {
+            advances[i] = false;
+        }
+        for (int i = _rotors.length - _pawls + 1; i < fast; i += 1) {
+            if (_rotors[i].atNotch(settings[i], _rings[i])) {
+                advances[i] = true;
+                advances[i - 1] = true;
+            }
+        }
+        if (fast > _rotors.length - _pawls
+                && _rotors[fast].atNotch(settings[fast], _rings[fast])) {
+            advances[fast - 1] = true;
+        }
+        for (int i = _rotors.length - _pawls; i < fast; i += 1) {
+            if (advances[i]) {
+                settings[i] = advance(settings[i]);
+            }
+        }
+        settings[fast] = advance(settings[fast]);
+    }
+
+    /** Return the setting following SETTING. */
+    private int advance(int setting) {
+        return setting + 1 == _alphabet.size() ? 0 : setting + 1;
+    }
+
+    /** Advance the rotors as if N characters had been converted, without
+     *  converting them.  Runs during which only the fast rotor moves are
+     *  skipped in one step, and once the rotors are found to cycle, whole
+     *  periods are skipped, so the cost is bounded by the rotors' period
+     *  rather than by N. */
+    void skip(long n) {
+        if (n < 0) {
+            throw error("cannot skip backwards");
+        }
+        int[] posns = movingSettings();
+        skip(posns, n);
+        setMovingSettings(posns);
+    }
+
+    /** Return the settings of my moving rotors, from left to right. */
+    private int[] movingSettings() {
+        return Arrays.copyOfRange(_settings, _rotors.length - _pawls,
+                                  _rotors.length);
+    }
+
+    /** Set my moving rotors, from left to right, to POSNS. */
+    private void setMovingSettings(int[] posns) {
+        System.arraycopy(posns, 0, _settings, _rotors.length - _pawls,
+                         _pawls);
+    }
+
+    /** Advance moving rotors at POSNS as if N >= 0 characters had been
+     *  converted, as for skip(N). */
+    private void skip(int[] posns, long n) {
+        if (_pawls == 0 || n == 0) {
+            return;
+        }
+        boolean cycling = true;
+        long states = 1;
+        for (int i = 0; i < _pawls && cycling; i += 1) {
+            cycling = states <= Long.MAX_VALUE / _alphabet.size();
+            states *= _alphabet.size();
+        }
+
+        long tortoise = encode(posns), tortoiseStep = 0, step = 0;
+        long power = 1, length = 0;
+        while (n > 0) {
+            long quiet = quietSteps(posns);
+            if (quiet >= n) {
+                posns[_pawls - 1] = (int) ((posns[_pawls - 1] + n)
+                                           % _alphabet.size());
+                break;
+            }
+            posns[_pawls - 1] = (int) ((posns[_pawls - 1] + quiet)
+                                       % _alphabet.size());
+            step(posns);
+            n -= quiet + 1;
+            step += quiet + 1;
+            if (cycling) {
+                long hare = encode(posns);
+                length += 1;
+                if (hare == tortoise) {
+                    n %= step - tortoiseStep;
+                    cycling = false;
+                } else if (length == power) {
+                    tortoise = hare;
+                    tortoiseStep = step;
+                    power *= 2;
+                    length = 0;
+                }
+            }
+        }
+    }
+
+    /** Return the number of steps, starting with the moving rotors at
+     *  POSNS, during which only the fast rotor would move, or
+     *  Long.MAX_VALUE if the other rotors would never move. */
+    private long quietSteps(int[] posns) {
+        int moving = _rotors.length - _pawls, last = _pawls - 1;
+        if (last == 0) {
+            return Long.MAX_VALUE;
+        }
+        for (int i = 1; i < last; i += 1) {
+            if (_rotors[moving + i].atNotch(posns[i], _rings[moving + i])) {
+                return 0;
+            }
+        }
+        Rotor fast = _rotors[moving + last];
+        int fastRing = _rings[moving + last];
+        for (int k = 0; k < _alphabet.size(); k += 1) {
+            int p = posns[last] + k;
+            if (fast.atNotch(p < _alphabet.size() ? p
+                             : p - _alphabet.size(), fastRing)) {
+                return k;
             }
         }
-        advances[_rotors.length - 1] += 1;
-        for (int i = _rotors.length - _pawls; i < _rotors.length; i += 1) {
-            if (advances[i] > 0) {
-                _rotors[i].advance();
+        return Long.MAX_VALUE;
+    }
+
+    /** Advance moving rotors at POSNS by one keypress, as advanceRotors
+     *  does. */
+    private void step(int[] posns) {
+        int moving = _rotors.length - _pawls, last = _pawls - 1;
+        boolean carry = true;
+        for (int i = last; i >= 0; i -= 1) {
+            Rotor r = _rotors[moving + i];
+            boolean notch = i > 0 && r.atNotch(posns[i], _rings[moving + i]);
+            boolean advance = carry || notch;
+            carry = notch;
+            if (advance) {
+                posns[i] = posns[i] + 1 == _alphabet.size() ? 0 : posns[i] + 1;
             }
         }
     }
 
+    /** Return POSNS as a single number in base alphabet size. */
+    private long encode(int[] posns) {
+        long code = 0;
+        for (int p : posns) {
+            code = code * _alphabet.size() + p;
+        }
+        return code;
+    }
+
     /** Return the result of applying the rotors to the character C (as an
      *  index in the range 0..alphabet size - 1). */
     private int applyRotors(int c) {
         for (int i = _rotors.length - 1; i > 0; i -= 1) {
-            c = _rotors[i].convertForward(c);
+            c = _rotors[i].convertForward(c, _settings[i]);
         }
-        for (Rotor r : _rotors) {
-            c = r.convertBackward(c);
+        for (int i = 0; i < _rotors.length; i += 1) {
+            c = _rotors[i].convertBackward(c, _settings[i]);
         }
         return c;
     }
 
+    /** Return the result of applying the rotors to the character C (as an
+     *  index in the range 0..alphabet size - 1), using the precomposed
+     *  table for the rotors that do not move. */
+    private int applyCompiledRotors(int c) {
+        int[] core = _core;
+        if (core == null) {
+            core = _core = compileCore();
+        }
+        int moving = _rotors.length - _pawls;
+        for (int i = _rotors.length - 1; i >= moving; i -= 1) {
+            c = _rotors[i].convertForward(c, _settings[i]);
+        }
+        c = core[c];
+        for (int i = moving; i < _rotors.length; i += 1) {
+            c = _rotors[i].convertBackward(c, _settings[i]);
+        }
+        return c;
+    }
+
+    /** Return the composition of the non-moving rotors, the reflector,
+     *  and the non-moving rotors in reverse at their current
+     *  settings. */
+    private int[] compileCore() {
+        int moving = _rotors.length - _pawls;
+        int[] core = new int[_alphabet.size()];
+        for (int k = 0; k < core.length; k += 1) {
+            int c = k;
+            for (int i = moving - 1; i > 0; i -= 1) {
+                c = _rotors[i].convertForward(c, _settings[i]);
+            }
+            for (int i = 0; i < moving; i += 1) {
+                c = _rotors[i].convertBackward(c, _settings[i]);
+            }
+            core[k] = c;
+        }
+        return core;
+    }
+
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String code = "";
-        for (int i = 0; i < msg.length(); i += 1) {
-            code += alphabet().toChar(convert(alphabet().toInt(msg.charAt(i))));
+        char[] code = msg.toCharArray();
+        convert(code, 0, code.length, code, 0);
+        return new String(code);
+    }
+
+    /** Store the encoding/decoding of the LEN characters of IN starting
+     *  at OFF into OUT starting at OUTOFF, updating the state of the
+     *  rotors accordingly.  IN and OUT may be the same array, in which
+     *  case OFF and OUTOFF must be equal or the ranges disjoint. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        Objects.checkFromIndexSize(off, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        Alphabet alpha = _alphabet;
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = alpha.toChar(convert(alpha.toInt(in[off + i])));
         }
-        return code;
     }
 
+    /** Store the encoding/decoding of the LEN alphabet indices of IN
+     *  starting at OFF into OUT starting at OUTOFF, updating the state
+     *  of the rotors accordingly, with the same provisos as for
+     *  char arrays. */
+    void convert(int[] in, int off, int len, int[] out, int outOff) {
+        Objects.checkFromIndexSize(off, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = convert(in[off + i]);
+        }
+    }
+
+    /** Encode/decode the remaining characters of IN into OUT, advancing
+     *  the positions of both buffers and updating the state of the
+     *  rotors accordingly.  OUT must have room for all of them. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw error("output buffer too small");
+        }
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+        } else {
+            Alphabet alpha = _alphabet;
+            for (int i = 0; i < len; i += 1) {
+                out.put(alpha.toChar(convert(alpha.toInt(in.get()))));
+            }
+        }
+    }
+
+    /** Encode/decode the remaining bytes of IN, each the code of a
+     *  character of my alphabet, into OUT, advancing the positions of
+     *  both buffers and updating the state of the rotors accordingly.
+     *  Either buffer may be direct.  My alphabet must be singleByte(),
+     *  and OUT must have room for the whole input. */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        if (!_alphabet.singleByte()) {
+            throw error("alphabet has characters that do not fit in a byte");
+        }
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw error("output buffer too small");
+        }
+        Alphabet alpha = _alphabet;
+        int inPos = in.position(), outPos = out.position();
+        if (in.hasArray() && out.hasArray()) {
+            byte[] src = in.array(), dst = out.array();
+            int from = in.arrayOffset() + inPos;
+            int to = out.arrayOffset() + outPos;
+            for (int i = 0; i < len; i += 1) {
+                dst[to + i] = alpha.toByte(convert(alpha.byteToInt(
+                        src[from + i])));
+            }
+        } else {
+            for (int i = 0; i < len; i += 1) {
+                out.put(outPos + i, alpha.toByte(convert(alpha.byteToInt(
+                        in.get(inPos + i)))));
+            }
+        }
+        in.position(inPos + len);
+        out.position(outPos + len);
+    }
+
+    /** Store the encoding/decoding of the LEN characters of IN starting
+     *  at OFF into OUT starting at OUTOFF, as for convert, but splitting
+     *  the work into chunks converted concurrently in POOL.  Each chunk
+     *  starts from the rotor settings skipped ahead to its offset, so
+     *  the result and final state are the same as those of convert. */
+    void convertParallel(char[] in, int off, int len, char[] out,
+                         int outOff, ForkJoinPool pool) {
+        Objects.checkFromIndexSize(off, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        int chunk = Math.max(MIN_CHUNK, len / (4 * pool.getParallelism()));
+        if (_tracing || len <= chunk) {
+            convert(in, off, len, out, outOff);
+            return;
+        }
+
+        int[] start = movingSettings();
+        int[] core = compileCore();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int k = 0; k < len; k += chunk) {
+            int from = k, size = Math.min(chunk, len - k);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                int[] posns = start.clone();
+                skip(posns, from);
+                convertChunk(posns, core, in, off + from, size,
+                             out, outOff + from);
+            }));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        skip(start, len);
+        setMovingSettings(start);
+    }
+
+    /** Convert LEN characters of IN starting at OFF into OUT starting at
+     *  OUTOFF with my moving rotors starting at POSNS, which are
+     *  advanced as they go, and my static rotors performing CORE.  Uses
+     *  no other mutable state, so that several chunks may be converted
+     *  at once. */
+    private void convertChunk(int[] posns, int[] core, char[] in, int off,
+                              int len, char[] out, int outOff) {
+        int moving = _rotors.length - _pawls;
+        Alphabet alpha = _alphabet;
+        Permutation plugboard = _plugboard;
+        for (int k = 0; k < len; k += 1) {
+            step(posns);
+            int c = plugboard.permute(alpha.toInt(in[off + k]));
+            for (int i = _pawls - 1; i >= 0; i -= 1) {
+                c = _rotors[moving + i].convertForward(c, posns[i]);
+            }
+            c = core[c];
+            for (int i = 0; i < _pawls; i += 1) {
+                c = _rotors[moving + i].convertBackward(c, posns[i]);
+            }
+            out[outOff + k] = alpha.toChar(plugboard.permute(c));
+        }
+    }
+
+    /** Smallest number of characters converted by one parallel task. */
+    private static final int MIN_CHUNK = 1 << 16;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
@@ -210,11 +626,37 @@ class Machine {
     private int _pawls;
 
     /** mapping of rotor collection by name. */
-    private final HashMap<String, Rotor> _allRotors;
+    private final Map<String, Rotor> _allRotors;
 
     /** selected rotors. */
     private Rotor[] _rotors;
 
+    /** _settings[K] is the current setting of _rotors[K]. */
+    private final int[] _settings;
+
+    /** _rings[K] is the ring setting of _rotors[K]. */
+    private final int[] _rings;
+
+    /** scratch space for advanceRotors: _advances[K] is true iff rotor
+     *  K advances on the current step. */
+    private final boolean[] _advances;
+
     /** plugboard permutation aka stecker. */
     private Permutation _plugboard;
+
+    /** true iff in compiled mode. */
+    private boolean _compiled;
+
+    /** the composition applied by compileCore, or null if it must be
+     *  rebuilt. */
+    private int[] _core;
+
+    /** receives my conversions when _tracing. */
+    private Tracer _tracer;
+
+    /** true iff _tracer records anything. */
+    private boolean _tracing;
+
+    /** scratch space for the rotor settings reported to _tracer. */
+    private final int[] _traceSettings;
 }
@@ -0,0 +1,139 @@
+package enigma;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/** A source of independent Enigma machines that all use one parsed
+ *  configuration: an alphabet, a number of rotor slots and pawls, and
+ *  a collection of rotors.  The rotors are shared by every machine, so
+ *  a machine costs only its own settings and scratch space.  Machines
+ *  may be had one per thread (local) or one per request (acquire and
+ *  release), in which case released machines are kept for reuse.  All
+ *  methods may be called from any thread; each machine handed out must
+ *  be used by only one thread at a time.  Machines are in compiled
+ *  mode.
+ *  @author David Babazadeh
+ */
+final class MachineFactory {
+
+    /** A factory for machines with alphabet ALPHA, NUMROTORS rotor slots
+     *  and PAWLS pawls, whose available rotors are ALLROTORS, keeping
+     *  up to MAXIDLE released machines for reuse. */
+    MachineFactory(Alphabet alpha, int numRotors, int pawls,
+                   Collection<Rotor> allRotors, int maxIdle) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _pawls = pawls;
+        _allRotors = List.copyOf(allRotors);
+        _catalog = Machine.catalog(_allRotors);
+        _idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+        _idle.offer(newMachine());
+        _local = ThreadLocal.withInitial(this::newMachine);
+    }
+
+    /** A factory for machines with alphabet ALPHA, NUMROTORS rotor slots
+     *  and PAWLS pawls, whose available rotors are ALLROTORS, keeping a
+     *  few released machines for each processor. */
+    MachineFactory(Alphabet alpha, int numRotors, int pawls,
+                   Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, allRotors,
+             IDLE_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Return the alphabet of my machines. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of my machines. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of my machines. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Return the rotors available to my machines. */
+    List<Rotor> rotors() {
+        return _allRotors;
+    }
+
+    /** Return a new machine, with no rotors inserted, that belongs to
+     *  the caller alone. */
+    Machine newMachine() {
+        Machine mach = new Machine(_alphabet, _numRotors, _pawls, _catalog);
+        mach.setCompiled(true);
+        return mach;
+    }
+
+    /** Return the machine belonging to the current thread, creating it
+     *  on first use.  It keeps its settings between calls. */
+    Machine local() {
+        return _local.get();
+    }
+
+    /** Return a machine set up according to the settings line SETTINGS,
+     *  reusing a released machine if there is one.  The caller should
+     *  pass it to release when done with it. */
+    Machine acquire(String settings) {
+        Machine mach = _idle.poll();
+        if (mach == null) {
+            mach = newMachine();
+        }
+        try {
+            mach.setUp(settings);
+        } catch (EnigmaException excp) {
+            release(mach);
+            throw excp;
+        }
+        return mach;
+    }
+
+    /** Return MACH, which must have come from acquire and must no longer
+     *  be used by the caller, for reuse. */
+    void release(Machine mach) {
+        mach.setTracer(Tracer.NONE);
+        _idle.offer(mach);
+    }
+
+    /** Return the encoding/decoding of MSG by a machine set up according
+     *  to the settings line SETTINGS. */
+    String convert(String settings, String msg) {
+        Machine mach = acquire(settings);
+        try {
+            return mach.convert(msg);
+        } finally {
+            release(mach);
+        }
+    }
+
+    /** Number of released machines kept per available processor by
+     *  default. */
+    private static final int IDLE_PER_PROCESSOR = 4;
+
+    /** Alphabet of my machines. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _pawls;
+
+    /** Available rotors, shared by all my machines. */
+    private final List<Rotor> _allRotors;
+
+    /** The rotors of _allRotors by name, shared by all my machines. */
+    private final Map<String, Rotor> _catalog;
+
+    /** Released machines awaiting reuse. */
+    private final ArrayBlockingQueue<Machine> _idle;
+
+    /** Each thread's own machine. */
+    private final ThreadLocal<Machine> _local;
+
+}
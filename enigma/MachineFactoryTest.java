@@ -0,0 +1,84 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the MachineFactory class.
+ *  @author David Babazadeh
+ */
+public class MachineFactoryTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    private static final Alphabet AZ = new Alphabet(TestUtils.UPPER_STRING);
+
+    private static final String SETTINGS1 =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    private MachineFactory factory() {
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B",
+                new Permutation(TestUtils.NAVALA.get("B"), AZ)));
+        rotors.add(new FixedRotor("Beta",
+                new Permutation(TestUtils.NAVALA.get("Beta"), AZ)));
+        rotors.add(new MovingRotor("III",
+                new Permutation(TestUtils.NAVALA.get("III"), AZ), "V"));
+        rotors.add(new MovingRotor("IV",
+                new Permutation(TestUtils.NAVALA.get("IV"), AZ), "J"));
+        rotors.add(new MovingRotor("I",
+                new Permutation(TestUtils.NAVALA.get("I"), AZ), "Q"));
+        return new MachineFactory(AZ, 5, 3, rotors, 2);
+    }
+
+    @Test
+    public void testAcquire() {
+        MachineFactory factory = factory();
+        Machine mach = factory.acquire(SETTINGS1);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROMHISSHOULDERHIAWATHA"));
+        factory.release(mach);
+        Machine again = factory.acquire(SETTINGS1);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                again.convert("FROMHISSHOULDERHIAWATHA"));
+        assertNotSame(again, factory.acquire(SETTINGS1));
+        assertSame(factory.local(), factory.local());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadSettings() {
+        factory().acquire("* B Beta III IV AXLE");
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        MachineFactory factory = factory();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i += 1) {
+                String settings = i % 2 == 0 ? SETTINGS1
+                    : "* B Beta I IV III " + AZ.toChar(i % 26) + "AAA";
+                results.add(pool.submit(() -> factory.convert(settings,
+                        "FROMHISSHOULDERHIAWATHA")));
+            }
+            for (int i = 0; i < results.size(); i += 2) {
+                assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                        results.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
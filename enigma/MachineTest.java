@@ -1,6 +1,13 @@
 package enigma;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -40,6 +47,7 @@ public class MachineTest {
 
     private static final String[] ROTORS1 = { "B", "Beta", "III", "IV", "I" };
     private static final String SETTING1 = "AXLE";
+    private static final String SETTING2 = "QDXA";
 
     private Machine mach1() {
         Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
@@ -76,4 +84,227 @@ public class MachineTest {
         assertEquals("QVPQSOKOILPUBKJZPISFXDW",
                 mach.convert("FROMHISSHOULDERHIAWATHA"));
     }
+
+    @Test
+    public void testSharedRotors() {
+        Machine mach = mach1(), other = mach1();
+        Permutation plugboard =
+            new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ);
+        mach.setPlugboard(plugboard);
+        other.setPlugboard(plugboard);
+        other.setRotors("ZZZZ", "BCDE");
+        other.convert("ANYTHINGATALL");
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testConvertArray() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] in = "xxFROMHISSHOULDERHIAWATHA".toCharArray();
+        char[] out = new char[in.length + 1];
+        mach.convert(in, 2, in.length - 2, out, 1);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                new String(out, 1, in.length - 2));
+    }
+
+    @Test
+    public void testConvertCharBuffer() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        CharBuffer in = CharBuffer.wrap("FROMHISSHOULDERHIAWATHA");
+        CharBuffer out = CharBuffer.allocate(in.remaining());
+        mach.convert(in, out);
+        assertEquals(0, in.remaining());
+        out.flip();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", out.toString());
+    }
+
+    @Test
+    public void testTracer() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(bytes);
+        mach.setTracer(new RingBufferTracer(AZ, err, 16));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROMHISSHOULDERHIAWATHA"));
+        mach.tracer().close();
+        String[] lines = bytes.toString().split(System.lineSeparator());
+        assertEquals(23, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("[AXLF] F -> F -> "));
+        assertTrue(lines[0], lines[0].endsWith(" -> Q"));
+        assertEquals(12, lines[22].split(" -> ").length);
+    }
+
+    @Test
+    public void testCompiled() {
+        Machine mach = mach1();
+        mach.setCompiled(true);
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROMHISSHOULDERHIAWATHA"));
+        mach.setRotors(SETTING1);
+        assertEquals("FROMHISSHOULDERHIAWATHA",
+                mach.convert("QVPQSOKOILPUBKJZPISFXDW"));
+        mach.setRotors("BXLE");
+        mach.setCompiled(false);
+        String plain = mach.convert("FROMHISSHOULDERHIAWATHA");
+        mach.setRotors("BXLE");
+        mach.setCompiled(true);
+        assertEquals(plain, mach.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testKeystreamTable() {
+        Machine mach = mach1();
+        mach.setRotors("AXLE", "ABCQ");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        KeystreamTable table = new KeystreamTable(mach);
+        int state = table.state(mach);
+        char[] msg = new char[2000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (char) ('A' + (i * 7) % 26);
+        }
+        char[] expected = new char[msg.length], actual = new char[msg.length];
+        mach.convert(msg, 0, msg.length, expected, 0);
+        int end = table.convert(state, msg, 0, msg.length, actual, 0);
+        assertEquals(new String(expected), new String(actual));
+        assertEquals(table.state(mach), end);
+    }
+
+    @Test
+    public void testKeystreamJump() {
+        Machine mach = mach1();
+        mach.setRotors("AXLE", "ABCQ");
+        mach.setPlugboard(new Permutation("", AZ));
+        KeystreamTable table = new KeystreamTable(mach);
+        for (long n : new long[] { 0, 1, 2, 27, 650, 17577, 123457 }) {
+            int[] jump = table.jump(n);
+            for (int s = 0; s < table.numStates(); s += 997) {
+                int state = s;
+                for (long i = 0; i < n; i += 1) {
+                    state = table.next(state);
+                }
+                assertEquals(TestUtils.msg("jump", "%d from %d", n, s),
+                             state, jump[s]);
+            }
+        }
+    }
+
+    /** Return the rotor settings of MACH. */
+    private static String settings(Machine mach) {
+        String result = "";
+        for (int i = 1; i < mach.numRotors(); i += 1) {
+            result += AZ.toChar(mach.setting(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void testSkip() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("", AZ));
+        String[] expected = new String[20000];
+        char[] msg = new char[1];
+        msg[0] = 'A';
+        for (int n = 0; n < expected.length; n += 1) {
+            expected[n] = settings(mach);
+            mach.convert(msg, 0, 1, msg, 0);
+        }
+        for (int n = 0; n < expected.length; n += 1) {
+            mach.setRotors(SETTING1);
+            mach.skip(n);
+            assertEquals(TestUtils.msg("skip", "%d steps", n),
+                    expected[n], settings(mach));
+        }
+    }
+
+    /** Return a machine with four moving rotors, each with several
+     *  notches, built from rotors of its own and set to SETTING2. */
+    private static Machine multiNotchMachine() {
+        HashMap<String, String> nav = TestUtils.NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), AZ)));
+        String[][] moving = { { "I", "AHOV" }, { "II", "EM" },
+                              { "III", "DKRY" }, { "IV", "JZ" } };
+        for (String[] rotor : moving) {
+            rotors.add(new MovingRotor(rotor[0],
+                    new Permutation(nav.get(rotor[0]), AZ), rotor[1]));
+        }
+        Machine mach = new Machine(AZ, 5, 4, rotors);
+        mach.insertRotors(new String[] { "B", "I", "II", "III", "IV" });
+        mach.setRotors(SETTING2);
+        mach.setPlugboard(new Permutation("", AZ));
+        return mach;
+    }
+
+    @Test
+    public void testSkipLong() {
+        Machine stepped = multiNotchMachine(), skipped = multiNotchMachine();
+        char[] msg = new char[1];
+        msg[0] = 'A';
+        int period = AZ.size() * AZ.size() * AZ.size() * AZ.size();
+        for (int n = 0; n <= 3 * period; n += 1) {
+            if (n % 99991 == 0) {
+                skipped.setRotors(SETTING2);
+                skipped.skip(n);
+                assertEquals(TestUtils.msg("skip", "%d steps", n),
+                        settings(stepped), settings(skipped));
+            }
+            stepped.convert(msg, 0, 1, msg, 0);
+        }
+
+        skipped.setRotors(SETTING2);
+        skipped.skip(123456789012L);
+        String once = settings(skipped);
+        skipped.setRotors(SETTING2);
+        skipped.skip(123456789000L);
+        skipped.skip(12);
+        assertEquals(once, settings(skipped));
+    }
+
+    @Test
+    public void testConvertParallel() {
+        Machine mach = mach1();
+        mach.setRotors("AXLE", "ABCQ");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] msg = new char[1000003];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (char) ('A' + (i * 7 + i / 13) % 26);
+        }
+        char[] expected = new char[msg.length], actual = new char[msg.length];
+        mach.convert(msg, 0, msg.length, expected, 0);
+        String end = settings(mach);
+        mach.setRotors("AXLE", "ABCQ");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        mach.convertParallel(msg, 0, msg.length, actual, 0, pool);
+        pool.shutdown();
+        assertArrayEquals(expected, actual);
+        assertEquals(end, settings(mach));
+    }
+
+    @Test
+    public void testConvertByteBuffer() {
+        byte[] msg = "FROMHISSHOULDERHIAWATHA"
+            .getBytes(StandardCharsets.US_ASCII);
+        for (boolean direct : new boolean[] { false, true }) {
+            Machine mach = mach1();
+            mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                              AZ));
+            ByteBuffer in = direct ? ByteBuffer.allocateDirect(msg.length)
+                : ByteBuffer.allocate(msg.length);
+            ByteBuffer out = ByteBuffer.allocateDirect(msg.length + 2);
+            in.put(msg).flip();
+            out.position(2);
+            mach.convert(in, out);
+            assertEquals(0, in.remaining());
+            byte[] result = new byte[msg.length];
+            out.flip().position(2);
+            out.get(result);
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                    new String(result, StandardCharsets.US_ASCII));
+        }
+    }
 }
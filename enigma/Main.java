@@ -2,16 +2,27 @@ package enigma;
 
 import ucb.util.CommandArgs;
 
-import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import java.util.List;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Scanner;
-import java.util.NoSuchElementException;
-import java.util.Objects;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static enigma.EnigmaException.error;
 
@@ -27,19 +38,37 @@ public final class Main {
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
-     *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  standard output. With --parallel, the sections of the input
+     *  introduced by each settings line are processed concurrently.
+     *  ARGS[0] may name a compiled configuration, as written by
+     *  --compile-config CONFIG OUTPUT, which writes the text
+     *  configuration CONFIG to OUTPUT in binary form instead of
+     *  processing messages.  Exits normally if there are no errors in
+     *  the input; otherwise with code 1. */
     public static void main(String... args) {
         try {
             CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
+                new CommandArgs("--verbose --parallel --compile-config "
+                                + "--=(.*){1,3}", args);
             if (!options.ok()) {
                 throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                            + "[--parallel] CONFIG [INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --compile-config "
+                            + "CONFIG OUTPUT");
             }
 
             _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            _parallel = options.contains("--parallel");
+            if (options.contains("--compile-config")) {
+                compileConfig(options.get("--"));
+            } else {
+                Main main = new Main(options.get("--"));
+                try {
+                    main.process();
+                } finally {
+                    main.close();
+                }
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -47,155 +76,381 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Write the compiled form of the configuration named by ARGS[0] to
+     *  the file named by ARGS[1]. */
+    private static void compileConfig(List<String> args) {
+        if (args.size() != 2) {
+            throw error("Usage: java enigma.Main --compile-config "
+                        + "CONFIG OUTPUT");
+        }
+        Main main = new Main(args.subList(0, 1));
+        try {
+            main.readConfig();
+        } finally {
+            main.close();
+        }
+        CompiledConfig.write(main._factory, Path.of(args.get(1)));
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
       *  on main). */
     Main(List<String> args) {
-        _config = getInput(args.get(0));
+        _configFile = Path.of(args.get(0));
+        if (!CompiledConfig.isCompiled(_configFile)) {
+            _config = getInput(args.get(0));
+        }
 
         if (args.size() > 1) {
-            _input = getInput(args.get(1));
+            _inputFile = args.get(1);
+            _inputStream = getInputStream(_inputFile);
         } else {
-            _input = new Scanner(System.in);
+            _inputStream = System.in;
         }
 
         if (args.size() > 2) {
-            _output = getOutput(args.get(2));
+            _outputStream = getOutputStream(args.get(2));
         } else {
-            _output = System.out;
+            _outputStream = System.out;
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Close the input and output files opened by my constructor,
+     *  leaving the standard input and output open. */
+    void close() {
         try {
-            return new Scanner(new File(name));
+            if (_inputStream != System.in) {
+                _inputStream.close();
+            }
+            if (_outputStream != System.out) {
+                _outputStream.close();
+            }
+        } catch (IOException excp) {
+            throw error("could not close files");
+        }
+    }
+
+    /** Return the contents of the file named NAME. */
+    private String getInput(String name) {
+        try {
+            return new String(Files.readAllBytes(Path.of(name)),
+                              Charset.defaultCharset());
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a stream reading from the file named NAME. */
+    private InputStream getInputStream(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new FileInputStream(name);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
-    private void process() {
-        Machine mach = readConfig();
-        if (_input.hasNext("\\*")) {
-            setUp(mach, _input.nextLine());
-        } else {
-            throw error("invalid input: first line must indicate settings");
+    /** Return a stream writing to the file named NAME. */
+    private OutputStream getOutputStream(String name) {
+        try {
+            return new FileOutputStream(name);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
         }
+    }
 
-        while (_input.hasNextLine()) {
-            String nextLine = _input.nextLine();
-            if (nextLine.contains("*")) {
-                setUp(mach, nextLine);
+    /** Set up the input and output for messages in ALPHABET.  When
+     *  every character of ALPHABET is ASCII, messages are read and
+     *  written as bytes through _byteInput and _byteOutput, mapping an
+     *  input file that is a regular file into memory and otherwise
+     *  flushing the output whenever the input waits for more;
+     *  otherwise they go through _input and _output, in the platform's
+     *  default character encoding. */
+    private void openMessages(Alphabet alphabet) {
+        boolean ascii = alphabet.singleByte();
+        for (int i = 0; i < alphabet.size() && ascii; i += 1) {
+            ascii = alphabet.toChar(i) < ASCII_LIMIT;
+        }
+        if (!ascii) {
+            _input = new MessageInput(new InputStreamReader(_inputStream));
+            _output = new MessageOutput(new OutputStreamWriter(_outputStream));
+            return;
+        }
+
+        if (_outputStream instanceof FileOutputStream) {
+            _byteOutput = new ChannelMessageOutput(
+                ((FileOutputStream) _outputStream).getChannel());
+        } else {
+            _byteOutput = new ChannelMessageOutput(
+                Channels.newChannel(_outputStream));
+        }
+        try {
+            if (_inputFile != null
+                    && Files.isRegularFile(Path.of(_inputFile))) {
+                _byteInput = new MappedMessageInput(
+                    ((FileInputStream) _inputStream).getChannel());
             } else {
-                String msg = nextLine.replaceAll(" ", "");
-                printMessageLine(mach.convert(msg));
+                _byteInput = new ChannelMessageInput(
+                    Channels.newChannel(_inputStream), _byteOutput);
             }
+        } catch (IOException excp) {
+            throw error("could not map %s", _inputFile);
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Configure an Enigma machine from the contents of configuration
+     *  file _config and apply it to the messages in the input, sending
+     *  the results to the output. */
+    void process() {
+        Machine mach = readConfig();
+        mach.setCompiled(true);
+        openMessages(mach.alphabet());
+        if (verbose()) {
+            mach.setTracer(new RingBufferTracer(_alphabet, System.err));
+        }
         try {
-            _alphabet = new Alphabet(_config.next());
-
-            if (!_config.hasNextInt()) {
-                throw error("invalid config: numRotors must be int");
+            int first = _byteInput == null ? _input.peek() : _byteInput.peek();
+            if (first != '*') {
+                throw error("invalid input: "
+                        + "first line must indicate settings");
             }
-            int numRotors = _config.nextInt();
 
-            if (!_config.hasNextInt()) {
-                throw error("invalid config: numPawls must be int");
+            if (parallel() && !verbose()) {
+                processSections();
+            } else if (_byteInput == null) {
+                processLines(mach);
+            } else {
+                processBytes(mach, _byteInput, _byteOutput);
             }
-            int pawls = _config.nextInt();
+        } finally {
+            mach.tracer().close();
+            if (_byteOutput == null) {
+                _output.flush();
+            } else {
+                _byteOutput.flush();
+            }
+        }
+    }
 
-            List<Rotor> allRotors = new ArrayList<Rotor>();
-            while (_config.hasNext()) {
-                allRotors.add(readRotor());
+    /** Apply MACH to the messages in _input, one line at a time, sending
+     *  the results to _output. */
+    private void processLines(Machine mach) {
+        char[] msg = new char[MESSAGE_CHUNK];
+        while (_input.peek() != -1) {
+            if (_input.peek() == '*') {
+                setUp(mach, _input.readLine());
+                continue;
             }
+            int n;
+            do {
+                n = _input.readMessage(msg);
+                mach.convert(msg, 0, n, msg, 0);
+                _output.print(msg, 0, n);
+            } while (n == msg.length);
+            _output.endLine();
+        }
+    }
 
-            return new Machine(_alphabet, numRotors, pawls, allRotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
+    /** Apply MACH to the messages in INPUT, one line at a time,
+     *  converting each run of message bytes straight from INPUT's
+     *  buffers into OUTPUT. */
+    private void processBytes(Machine mach, ByteMessageInput input,
+                              ByteMessageOutput output) {
+        while (input.peek() != -1) {
+            if (input.peek() == '*') {
+                setUp(mach, input.readLine());
+                continue;
+            }
+            for (ByteBuffer run = input.readMessage(); run != null;
+                 run = input.readMessage()) {
+                output.convert(mach, run);
+            }
+            output.endLine();
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Apply machines configured from _config to the messages in the
+     *  input, converting each section (a settings line and the messages
+     *  following it) concurrently, each with a machine of its own from
+     *  _factory, and sending the results to the output in their
+     *  original order. */
+    private void processSections() {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = 4 * pool.getParallelism();
+        ArrayDeque<Future<Section>> pending = new ArrayDeque<>();
         try {
-            String name = _config.next();
-            String type = _config.next();
+            while (_byteInput == null ? _input.peek() != -1
+                   : _byteInput.peek() != -1) {
+                Section section = _byteInput == null
+                    ? new CharSection(_input) : new ByteSection(_byteInput);
+                pending.add(pool.submit(() -> {
+                    section.convert(_factory);
+                    return section;
+                }));
+                while (!pending.isEmpty() && (pending.size() > window
+                                              || pending.peek().isDone())) {
+                    pending.poll().get().print();
+                }
+            }
+            while (!pending.isEmpty()) {
+                pending.poll().get().print();
+            }
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("%s", excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted");
+        } finally {
+            for (Future<Section> section : pending) {
+                section.cancel(false);
+            }
+        }
+    }
+
+    /** A settings line and the message lines that follow it, up to the
+     *  next settings line. */
+    private abstract class Section {
 
-            String cycles = readNextCycle();
+        /** A section with settings line SETTINGS. */
+        Section(String settings) {
+            _settings = settings;
+        }
 
-            return switch (type.charAt(0)) {
-            case 'M' -> new MovingRotor(name, new Permutation(cycles,
-                    _alphabet), type.substring(1));
-            case 'N' -> new FixedRotor(name, new Permutation(cycles,
-                    _alphabet));
-            default -> new Reflector(name, new Permutation(cycles, _alphabet));
-            };
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+        /** Convert my messages with a machine from FACTORY set up
+         *  according to my settings line. */
+        final void convert(MachineFactory factory) {
+            Machine mach = factory.acquire(_settings);
+            try {
+                convert(mach);
+            } finally {
+                factory.release(mach);
+            }
         }
+
+        /** Convert my messages with MACH, which has been set up according
+         *  to my settings line. */
+        abstract void convert(Machine mach);
+
+        /** Print my converted messages, one per line. */
+        abstract void print();
+
+        /** The settings line. */
+        private final String _settings;
     }
 
-    /** reads next sequence of cycles from config and returns string
-     *  for permutation. */
-    private String readNextCycle() {
-        String cycles = "";
+    /** A Section read from a MessageInput and printed to _output. */
+    private final class CharSection extends Section {
+
+        /** A section read from the start of a settings line in INPUT. */
+        CharSection(MessageInput input) {
+            super(input.readLine());
+            char[] chunk = new char[MESSAGE_CHUNK];
+            while (input.peek() != -1 && input.peek() != '*') {
+                int n;
+                do {
+                    n = input.readMessage(chunk);
+                    append(chunk, n);
+                } while (n == chunk.length);
+                if (_lines == _lineEnds.length) {
+                    _lineEnds = Arrays.copyOf(_lineEnds, 2 * _lines);
+                }
+                _lineEnds[_lines] = _length;
+                _lines += 1;
+            }
+        }
+
+        @Override
+        void convert(Machine mach) {
+            mach.convert(_text, 0, _length, _text, 0);
+        }
 
-        while (_config.hasNext("\\(.+\\)")) {
-            cycles += _config.next() + " ";
+        @Override
+        void print() {
+            int start = 0;
+            for (int i = 0; i < _lines; i += 1) {
+                _output.print(_text, start, _lineEnds[i] - start);
+                _output.endLine();
+                start = _lineEnds[i];
+            }
         }
 
-        if (cycles.equals("")) {
-            return cycles;
+        /** Append the first N characters of CHUNK to my text. */
+        private void append(char[] chunk, int n) {
+            if (_length + n > _text.length) {
+                _text = Arrays.copyOf(_text,
+                                      Math.max(2 * _text.length, _length + n));
+            }
+            System.arraycopy(chunk, 0, _text, _length, n);
+            _length += n;
         }
 
-        return cycles.substring(0, cycles.length() - 1);
+        /** Message characters of all my lines, without whitespace. */
+        private char[] _text = new char[INITIAL_SECTION];
+
+        /** Number of characters in _text. */
+        private int _length;
+
+        /** Line K ends just before _text[_lineEnds[K]]. */
+        private int[] _lineEnds = new int[1];
+
+        /** Number of message lines. */
+        private int _lines;
     }
 
-    /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment.
-     *  expects asterisk  */
-    private void setUp(Machine M, String settings) {
-        String[] settingsArr = settings.split(" ");
-        if (!Objects.equals(settingsArr[0], "*")) {
-            throw error("invalid settings line: must begin with *");
-        } else if (settingsArr.length < M.numRotors() + 2) {
-            throw error("invalid settings: requires %d arguments",
-                    M.numRotors() + 2);
+    /** A Section read from a ByteMessageInput, whose messages are
+     *  converted straight from the input's buffers, and printed to
+     *  _byteOutput. */
+    private final class ByteSection extends Section {
+
+        /** A section read from the start of a settings line in INPUT. */
+        ByteSection(ByteMessageInput input) {
+            super(input.readLine());
+            _lines = input.readSection();
         }
 
-        M.insertRotors(Arrays.copyOfRange(settingsArr, 1, M.numRotors() + 1));
+        @Override
+        void convert(Machine mach) {
+            int size = 0;
+            for (ByteBuffer part : _lines) {
+                size += part.remaining();
+            }
+            ByteMessageOutput output =
+                new ByteMessageOutput(ByteBuffer.allocate(2 * size + 2));
+            processBytes(mach, new ByteMessageInput(_lines), output);
+            _lines = null;
+            _converted = output.contents();
+        }
 
-        if (settingsArr.length > M.numRotors() + 2
-                && !settingsArr[M.numRotors() + 2].contains("(")) {
-            M.setRotors(settingsArr[M.numRotors() + 1],
-                    settingsArr[M.numRotors() + 2]);
-        } else {
-            M.setRotors(settingsArr[M.numRotors() + 1]);
+        @Override
+        void print() {
+            _byteOutput.write(_converted);
         }
 
-        if (!settings.contains("(")) {
-            M.setPlugboard(new Permutation("", _alphabet));
+        /** The bytes of my message lines, until I am converted. */
+        private List<ByteBuffer> _lines;
+
+        /** My converted message lines. */
+        private ByteBuffer _converted;
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  text _config, or from the compiled configuration _configFile. */
+    Machine readConfig() {
+        if (_config == null) {
+            _factory = CompiledConfig.read(_configFile);
         } else {
-            M.setPlugboard(new Permutation(
-                    settings.substring(settings.indexOf('(')), _alphabet));
+            _factory = new ConfigParser(_config).parse();
         }
+        _alphabet = _factory.alphabet();
+        return _factory.newMachine();
+    }
+
+    /** Set M according to the specification given on SETTINGS,
+     *  which must have the format specified in the assignment.
+     *  expects asterisk  */
+    private void setUp(Machine M, String settings) {
+        M.setUp(settings);
     }
 
     /** Return true iff verbose option specified. */
@@ -203,30 +458,59 @@ public final class Main {
         return _verbose;
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        for (int i = 0; i < msg.length(); i += 1) {
-            _output.print(msg.charAt(i));
-            if ((i + 1) % 5 == 0) {
-                _output.print(" ");
-            }
-        }
-        _output.println();
+    /** Return true iff parallel option specified. */
+    static boolean parallel() {
+        return _parallel;
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
-    /** Source of input messages. */
-    private Scanner _input;
+    /** Character codes below this are ASCII. */
+    private static final int ASCII_LIMIT = 128;
+
+    /** Number of message characters converted at a time. */
+    private static final int MESSAGE_CHUNK = 1 << 13;
+
+    /** Initial capacity of the text of a Section. */
+    private static final int INITIAL_SECTION = 1 << 10;
+
+    /** Source of machines configured from _config. */
+    private MachineFactory _factory;
+
+    /** Name of the input file, or null for the standard input. */
+    private String _inputFile;
+
+    /** Stream of input messages. */
+    private InputStream _inputStream;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Stream for encoded/decoded messages. */
+    private OutputStream _outputStream;
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    /** Source of input messages in characters that are not all
+     *  ASCII. */
+    private MessageInput _input;
+
+    /** Source of input messages in ASCII characters. */
+    private ByteMessageInput _byteInput;
+
+    /** Name of the configuration file. */
+    private Path _configFile;
+
+    /** Text of the machine configuration, or null if _configFile is a
+     *  compiled configuration. */
+    private String _config;
+
+    /** File for encoded/decoded messages in characters that are not
+     *  all ASCII. */
+    private MessageOutput _output;
+
+    /** File for encoded/decoded messages in ASCII characters. */
+    private ChannelMessageOutput _byteOutput;
 
     /** True if --verbose specified. */
     private static boolean _verbose;
+
+    /** True if --parallel specified. */
+    private static boolean _parallel;
 }
@@ -0,0 +1,57 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** A ByteMessageInput that reads a file by mapping it into memory, a
+ *  segment at a time, so that reading costs no system calls or copies
+ *  and the operating system's page cache does the I/O.  Each segment
+ *  ends at the last line terminator it contains, so that only a line
+ *  longer than a whole segment is ever split between two.
+ *  @author David Babazadeh
+ */
+final class MappedMessageInput extends ByteMessageInput {
+
+    /** An input reading the whole of the file open on CHANNEL. */
+    MappedMessageInput(FileChannel channel) throws IOException {
+        _channel = channel;
+        _size = channel.size();
+    }
+
+    @Override
+    ByteBuffer window() throws IOException {
+        if (_mapped == _size) {
+            return null;
+        }
+        long len = Math.min(SEGMENT_SIZE, _size - _mapped);
+        MappedByteBuffer segment =
+            _channel.map(FileChannel.MapMode.READ_ONLY, _mapped, len);
+        int end = (int) len;
+        if (_mapped + len < _size) {
+            while (end > 0 && segment.get(end - 1) != '\n') {
+                end -= 1;
+            }
+            if (end == 0) {
+                end = (int) len;
+            }
+        }
+        segment.limit(end);
+        _mapped += end;
+        return segment;
+    }
+
+    /** Largest region mapped at once. */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    /** Channel of the file being read. */
+    private final FileChannel _channel;
+
+    /** Size of the file being read. */
+    private final long _size;
+
+    /** Number of bytes of the file read so far. */
+    private long _mapped;
+
+}
@@ -0,0 +1,119 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import static enigma.EnigmaException.*;
+
+/** A buffered source of the characters of an input file for Main.
+ *  Settings lines are read whole; message text is read a character at
+ *  a time, so lines of any length are handled in constant space.
+ *  @author David Babazadeh
+ */
+final class MessageInput {
+
+    /** An input reading characters from SOURCE. */
+    MessageInput(Reader source) {
+        _source = source;
+        _buffer = new char[BUFFER_SIZE];
+    }
+
+    /** Return the next character without consuming it, or -1 at the end
+     *  of the input. */
+    int peek() {
+        if (_pos == _limit && !refill()) {
+            return -1;
+        }
+        return _buffer[_pos];
+    }
+
+    /** Consume and return the next character, or -1 at the end of the
+     *  input. */
+    int read() {
+        if (_pos == _limit && !refill()) {
+            return -1;
+        }
+        return _buffer[_pos++];
+    }
+
+    /** Consume the rest of the current line, including its terminator,
+     *  and return it without the terminator. */
+    String readLine() {
+        StringBuilder line = new StringBuilder();
+        for (int c = read(); c != -1 && c != '\n'; c = read()) {
+            line.append((char) c);
+        }
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            line.setLength(end - 1);
+        }
+        return line.toString();
+    }
+
+    /** Store up to BUF.length characters of the rest of the
+     *  message text on the current line in BUF, skipping whitespace.
+     *  Returns the number stored; a result less than BUF.length means
+     *  that the line has ended, and its terminator has been consumed.
+     *  A line that contains '*' anywhere but at its start is a
+     *  malformed settings line, and is rejected. */
+    int readMessage(char[] buf) {
+        int n = 0;
+        while (n < buf.length) {
+            if (_pos == _limit && !refill()) {
+                break;
+            }
+            char c = _buffer[_pos++];
+            if (c == '\n') {
+                break;
+            } else if (c == '*') {
+                throw error(MISPLACED_SETTINGS);
+            } else if (!Character.isWhitespace(c)) {
+                buf[n] = c;
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Refill my buffer, returning false at the end of the input. */
+    private boolean refill() {
+        if (_eof) {
+            return false;
+        }
+        try {
+            int n;
+            do {
+                n = _source.read(_buffer);
+            } while (n == 0);
+            _pos = 0;
+            _limit = Math.max(n, 0);
+            _eof = n < 0;
+            return n > 0;
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+    }
+
+    /** Size of my buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Error message for a '*' anywhere but at the start of a line. */
+    static final String MISPLACED_SETTINGS =
+        "invalid settings line: must begin with *";
+
+    /** Source of my characters. */
+    private final Reader _source;
+
+    /** Characters read but not yet consumed are _buffer[_pos.._limit-1]. */
+    private final char[] _buffer;
+
+    /** Index of the next character in _buffer. */
+    private int _pos;
+
+    /** Number of valid characters in _buffer. */
+    private int _limit;
+
+    /** True once my source is exhausted. */
+    private boolean _eof;
+
+}
@@ -0,0 +1,87 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static enigma.EnigmaException.*;
+
+/** A buffered destination for the messages produced by Main, printed
+ *  in groups of five characters separated by spaces.
+ *  @author David Babazadeh
+ */
+final class MessageOutput {
+
+    /** An output writing to SINK. */
+    MessageOutput(Writer sink) {
+        _sink = sink;
+        _buffer = new char[BUFFER_SIZE];
+    }
+
+    /** Print the LEN characters of MSG starting at OFF as a continuation
+     *  of the current line, in groups of five. */
+    void print(char[] msg, int off, int len) {
+        for (int i = 0; i < len; i += 1) {
+            if (_limit + 2 > _buffer.length) {
+                flushBuffer();
+            }
+            _buffer[_limit++] = msg[off + i];
+            _group += 1;
+            if (_group == GROUP_SIZE) {
+                _buffer[_limit++] = ' ';
+                _group = 0;
+            }
+        }
+    }
+
+    /** End the current line. */
+    void endLine() {
+        if (_limit + NEWLINE.length() > _buffer.length) {
+            flushBuffer();
+        }
+        NEWLINE.getChars(0, NEWLINE.length(), _buffer, _limit);
+        _limit += NEWLINE.length();
+        _group = 0;
+    }
+
+    /** Write out everything printed so far. */
+    void flush() {
+        flushBuffer();
+        try {
+            _sink.flush();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Write out and empty my buffer. */
+    private void flushBuffer() {
+        try {
+            _sink.write(_buffer, 0, _limit);
+            _limit = 0;
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Number of characters in a group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Line terminator. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Size of my buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Destination of my characters. */
+    private final Writer _sink;
+
+    /** Characters printed but not yet written are _buffer[0.._limit-1]. */
+    private final char[] _buffer;
+
+    /** Number of characters in _buffer. */
+    private int _limit;
+
+    /** Number of characters in the current group. */
+    private int _group;
+
+}
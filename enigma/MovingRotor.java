@@ -14,33 +14,65 @@ class MovingRotor extends Rotor {
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
-        _notches = notches;
+        _notchMask = new long[(size() + 63) >>> 6];
 
         for (int i = 0; i < notches.length(); i++) {
             if (!alphabet().contains(notches.charAt(i))) {
                 throw error("invalid notch %c", notches.charAt(i));
             }
+            int k = alphabet().toInt(notches.charAt(i));
+            _notchMask[k >>> 6] |= 1L << k;
         }
     }
 
+    /** A rotor named NAME whose permutation in its default setting is
+     *  PERM, and whose notches are at the positions K for which bit K of
+     *  NOTCHMASK (bit K % 64 of word K / 64) is set. */
+    MovingRotor(String name, Permutation perm, long[] notchMask) {
+        super(name, perm);
+        if (notchMask.length != (size() + 63) >>> 6
+                || (size() % 64 != 0
+                    && notchMask[notchMask.length - 1] >>> size() != 0)) {
+            throw error("invalid notch mask");
+        }
+        _notchMask = notchMask.clone();
+    }
+
+    /** Return my notches as a mask, in the form accepted by my
+     *  constructor. */
+    long[] notchMask() {
+        return _notchMask.clone();
+    }
+
     @Override
-    void advance() {
-        set(permutation().wrap(setting() + 1));
+    boolean rotates() {
+        return true;
     }
 
     @Override
     String notches() {
         String notches = "";
 
-        for (int i = 0; i < _notches.length(); i++) {
-            notches += alphabet().toChar(alphabet().toInt(_notches.charAt(i))
-                    - ring());
+        for (int i = 0; i < size(); i++) {
+            if (atNotch(i, 0)) {
+                notches += alphabet().toChar(i);
+            }
         }
 
         return notches;
     }
 
-    /** string of notches in rotor.  */
-    private String _notches;
+    @Override
+    boolean atNotch(int setting, int ring) {
+        int k = setting + ring;
+        if (k >= size()) {
+            k -= size();
+        }
+        return (_notchMask[k >>> 6] & (1L << k)) != 0;
+    }
+
+    /** Bit K is set iff the ring letter numbered K is one of my
+     *  notches. */
+    private final long[] _notchMask;
 
 }
@@ -24,10 +24,10 @@ public class MovingRotorTest {
     private String alpha = UPPER_STRING;
 
     /** Check that rotor has an alphabet whose size is that of
-     *  FROMALPHA and TOALPHA and that maps each character of
+     *  FROMALPHA and TOALPHA and that, at SETTING, maps each character of
      *  FROMALPHA to the corresponding character of FROMALPHA, and
      *  vice-versa. TESTID is used in error messages.  */
-    private void checkRotor(String testId,
+    private void checkRotor(String testId, int setting,
                             String fromAlpha, String toAlpha) {
         int N = fromAlpha.length();
         assertEquals(testId + " (wrong length)", N, rotor.size());
@@ -35,9 +35,9 @@ public class MovingRotorTest {
             char c = fromAlpha.charAt(i), e = toAlpha.charAt(i);
             int ci = alpha.indexOf(c), ei = alpha.indexOf(e);
             assertEquals(msg(testId, "wrong translation of %d (%c)", ci, c),
-                         ei, rotor.convertForward(ci));
+                         ei, rotor.convertForward(ci, setting));
             assertEquals(msg(testId, "wrong inverse of %d (%c)", ei, e),
-                         ci, rotor.convertBackward(ei));
+                         ci, rotor.convertBackward(ei, setting));
         }
     }
 
@@ -54,45 +54,72 @@ public class MovingRotorTest {
     @Test
     public void checkRotorAtA() {
         setRotor("I", NAVALA, "");
-        checkRotor("Rotor I (A)", UPPER_STRING, NAVALA_MAP.get("I"));
+        checkRotor("Rotor I (A)", 0, UPPER_STRING, NAVALA_MAP.get("I"));
     }
 
     @Test
     public void checkRotorAdvance() {
         setRotor("I", NAVALA, "");
-        rotor.advance();
-        checkRotor("Rotor I advanced", UPPER_STRING, NAVALB_MAP.get("I"));
+        checkRotor("Rotor I advanced", 1, UPPER_STRING, NAVALB_MAP.get("I"));
     }
 
     @Test
     public void checkRotorSet() {
         setRotor("I", NAVALA, "");
-        rotor.set(25);
-        checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
+        checkRotor("Rotor I set", 25, UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
     @Test
     public void checkConvertForward() {
         setRotor("I", NAVALA, "");
-        checkRotor("Rotor I (A)", UPPER_STRING, NAVALA_MAP.get("I"));
+        checkRotor("Rotor I (A)", 0, UPPER_STRING, NAVALA_MAP.get("I"));
         assertEquals(alpha.indexOf('P'),
-                rotor.convertForward(alpha.indexOf('T')));
+                rotor.convertForward(alpha.indexOf('T'), 0));
         assertEquals(alpha.indexOf('A'),
-                rotor.convertForward(alpha.indexOf('U')));
+                rotor.convertForward(alpha.indexOf('U'), 0));
         assertEquals(alpha.indexOf('S'),
-                rotor.convertForward(alpha.indexOf('S')));
+                rotor.convertForward(alpha.indexOf('S'), 0));
     }
 
     @Test
     public void checkConvertBackward() {
         setRotor("I", NAVALA, "");
-        checkRotor("Rotor I (A)", UPPER_STRING, NAVALA_MAP.get("I"));
+        checkRotor("Rotor I (A)", 0, UPPER_STRING, NAVALA_MAP.get("I"));
         assertEquals(alpha.indexOf('T'),
-                rotor.convertBackward(alpha.indexOf('P')));
+                rotor.convertBackward(alpha.indexOf('P'), 0));
         assertEquals(alpha.indexOf('U'),
-                rotor.convertBackward(alpha.indexOf('A')));
+                rotor.convertBackward(alpha.indexOf('A'), 0));
         assertEquals(alpha.indexOf('S'),
-                rotor.convertBackward(alpha.indexOf('S')));
+                rotor.convertBackward(alpha.indexOf('S'), 0));
+    }
+
+    @Test
+    public void checkSharedTables() {
+        setRotor("I", NAVALA, "");
+        Rotor other = new FixedRotor("I2",
+                new Permutation(NAVALA.get("I"), UPPER));
+        assertSame(rotor.tables(), other.tables());
+        for (int s = 0; s < rotor.size(); s += 1) {
+            for (int p = 0; p < rotor.size(); p += 1) {
+                assertEquals(rotor.permutation().wrap(
+                        rotor.permutation().permute(p + s) - s),
+                        rotor.convertForward(p, s));
+            }
+        }
+    }
+
+    @Test
+    public void checkNotches() {
+        setRotor("VI", NAVALA, "ZM");
+        for (int s = 0; s < rotor.size(); s += 1) {
+            assertEquals(msg("notch", "setting %d", s),
+                         s == 12 || s == 25, rotor.atNotch(s, 0));
+        }
+        assertEquals("MZ", rotor.notches());
+        int k = alpha.indexOf('K'), p = alpha.indexOf('P');
+        assertTrue(rotor.atNotch(k, p));
+        assertTrue(rotor.atNotch(alpha.indexOf('X'), p));
+        assertFalse(rotor.atNotch(k, 0));
     }
 
 }
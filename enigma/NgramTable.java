@@ -0,0 +1,235 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Log probabilities of the n-grams of a language over an alphabet, for
+ *  scoring trial decryptions.  The n-gram c1 c2 ... cn, as alphabet
+ *  indices, is numbered c1 * size^(n-1) + ... + cn, and its score is
+ *  the base 10 logarithm of its frequency in some sample of the
+ *  language.  N-grams never seen get a floor score lower than any seen.
+ *
+ *  <p>Scores are read through a FloatBuffer, which may wrap an array or
+ *  a file mapped by read, so that threads and processes using the same
+ *  file share one copy of it outside the heap.  A table is read-only
+ *  and may be used by any number of threads.  A table file holds, in
+ *  order and big-endian:
+ *  <pre>
+ *    int     MAGIC, int VERSION
+ *    int     alphabet size N, then N chars of the alphabet
+ *    int     n-gram length, then float[N^n] scores
+ *  </pre>
+ *  @author David Babazadeh
+ */
+final class NgramTable {
+
+    /** Largest number of n-grams I will hold. */
+    static final int MAX_ENTRIES = 1 << 28;
+
+    /** First int of every n-gram table file: 0x89 followed by "NGR".
+     *  As for CompiledConfig.MAGIC, the first byte cannot begin ASCII or
+     *  UTF-8 text, so that no text file is taken for a table. */
+    static final int MAGIC = 0x894e4752;
+
+    /** A table of N-grams over ALPHA in which n-gram number K has score
+     *  SCORES[K].  SCORES is used directly. */
+    NgramTable(Alphabet alpha, int n, float[] scores) {
+        this(alpha, n, FloatBuffer.wrap(scores));
+    }
+
+    /** A table of N-grams over ALPHA in which n-gram number K has score
+     *  SCORES.get(K).  SCORES is used directly. */
+    private NgramTable(Alphabet alpha, int n, FloatBuffer scores) {
+        if (n < 1 || entries(alpha, n) != scores.limit()) {
+            throw error("n-gram table has the wrong number of entries");
+        }
+        _alphabet = alpha;
+        _n = n;
+        _scores = scores;
+    }
+
+    /** Return a table of the N-grams over ALPHA found in CORPUS, in
+     *  which characters not in ALPHA separate words, and n-grams are
+     *  counted only within words. */
+    static NgramTable build(Alphabet alpha, int n, CharSequence corpus) {
+        long entries = entries(alpha, n);
+        if (n < 1 || entries > MAX_ENTRIES) {
+            throw error("n-gram table too large");
+        }
+        int size = alpha.size();
+        int modulus = (int) (entries / size);
+        int[] counts = new int[(int) entries];
+        long total = 0;
+        int index = 0, run = 0;
+        for (int i = 0; i < corpus.length(); i += 1) {
+            char ch = Character.toUpperCase(corpus.charAt(i));
+            if (!alpha.contains(ch)) {
+                ch = corpus.charAt(i);
+            }
+            if (!alpha.contains(ch)) {
+                run = 0;
+                continue;
+            }
+            index = (index % modulus) * size + alpha.toInt(ch);
+            run += 1;
+            if (run >= n) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        if (total == 0) {
+            throw error("corpus has no %d-grams", n);
+        }
+
+        float[] scores = new float[(int) entries];
+        double floor = Math.log10(FLOOR / total);
+        for (int k = 0; k < scores.length; k += 1) {
+            scores[k] = (float) (counts[k] == 0 ? floor
+                                 : Math.log10((double) counts[k] / total));
+        }
+        return new NgramTable(alpha, n, scores);
+    }
+
+    /** Return the table in the file named NAME, which is
+     *  memory-mapped. */
+    static NgramTable read(Path name) {
+        try (FileChannel in = FileChannel.open(name)) {
+            return read(in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return the table in the remaining bytes of DATA, whose scores are
+     *  read from DATA directly. */
+    static NgramTable read(ByteBuffer data) {
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw error("not an n-gram table");
+            }
+            int size = data.getInt();
+            if (size < 0 || size > data.remaining() / Character.BYTES) {
+                throw error("invalid n-gram table");
+            }
+            char[] chars = new char[size];
+            data.asCharBuffer().get(chars);
+            data.position(data.position() + size * Character.BYTES);
+            Alphabet alpha = new Alphabet(new String(chars));
+            int n = data.getInt();
+            if (n < 1 || entries(alpha, n) * Float.BYTES
+                != data.remaining()) {
+                throw error("invalid n-gram table");
+            }
+            return new NgramTable(alpha, n, data.asFloatBuffer());
+        } catch (RuntimeException excp) {
+            if (excp instanceof EnigmaException) {
+                throw excp;
+            }
+            throw error("n-gram table truncated");
+        }
+    }
+
+    /** Write me to the file named NAME. */
+    void write(Path name) {
+        int size = _alphabet.size();
+        ByteBuffer header =
+            ByteBuffer.allocate(4 * Integer.BYTES + size * Character.BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size);
+        for (int k = 0; k < size; k += 1) {
+            header.putChar(_alphabet.toChar(k));
+        }
+        header.putInt(_n).flip();
+
+        try (FileChannel out = FileChannel.open(name,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long bytes = header.limit()
+                + (long) _scores.limit() * Float.BYTES;
+            ByteBuffer data = out.map(FileChannel.MapMode.READ_WRITE, 0,
+                                      bytes);
+            data.put(header);
+            data.asFloatBuffer().put(_scores.duplicate().clear());
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return the number of N-grams over ALPHA. */
+    private static long entries(Alphabet alpha, int n) {
+        long entries = 1;
+        for (int i = 0; i < n && entries <= MAX_ENTRIES; i += 1) {
+            entries *= alpha.size();
+        }
+        return entries;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my n-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the score of n-gram number INDEX. */
+    float score(int index) {
+        return _scores.get(index);
+    }
+
+    /** Return the score of the n-gram of TEXT, given as alphabet
+     *  indices, starting at OFF. */
+    float score(int[] text, int off) {
+        int size = _alphabet.size(), index = 0;
+        for (int i = 0; i < _n; i += 1) {
+            index = index * size + text[off + i];
+        }
+        return _scores.get(index);
+    }
+
+    /** Return the total score of the n-grams of TEXT, given as alphabet
+     *  indices. */
+    double score(int[] text) {
+        return score(text, 0, text.length);
+    }
+
+    /** Return the total score of the n-grams of the LEN alphabet indices
+     *  of TEXT starting at OFF.  The number of each n-gram is rolled on
+     *  from that of the one before. */
+    double score(int[] text, int off, int len) {
+        int size = _alphabet.size(), index = 0;
+        int modulus = _scores.limit() / size;
+        double total = 0;
+        for (int i = 0; i < len; i += 1) {
+            index = (index % modulus) * size + text[off + i];
+            if (i >= _n - 1) {
+                total += _scores.get(index);
+            }
+        }
+        return total;
+    }
+
+    /** Count given to unseen n-grams when computing their scores. */
+    private static final double FLOOR = 0.01;
+
+    /** Version of the file format written. */
+    private static final int VERSION = 1;
+
+    /** Alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Length of my n-grams. */
+    private final int _n;
+
+    /** _scores.get(K) is the score of n-gram number K. */
+    private final FloatBuffer _scores;
+
+}
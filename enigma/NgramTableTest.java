@@ -0,0 +1,76 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the NgramTable class.
+ *  @author David Babazadeh
+ */
+public class NgramTableTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testNgramTable() {
+        Alphabet abc = new Alphabet("ABC");
+        NgramTable table = NgramTable.build(abc, 2, "aab, ab");
+        assertEquals(2, table.n());
+        assertEquals(Math.log10(1.0 / 3), table.score(0), 1e-6);
+        assertEquals(Math.log10(2.0 / 3), table.score(1), 1e-6);
+        assertTrue(table.score(2) < table.score(0));
+        assertEquals(table.score(1), table.score(new int[] { 2, 0, 1 }, 1),
+                     0);
+        assertEquals(table.score(0) + table.score(1),
+                     table.score(new int[] { 0, 0, 1 }), 1e-6);
+    }
+
+    @Test
+    public void testNgramFile() throws Exception {
+        MachineFactory factory = KeySearchTest.factory("I", "II", "III");
+        String plain = KeySearchTest.PLAIN;
+        NgramTable built = NgramTable.build(factory.alphabet(), 4, plain);
+        Path file = Files.createTempFile("enigma", ".ngr");
+        try {
+            built.write(file);
+            NgramTable loaded = NgramTable.read(file);
+            assertEquals(TestUtils.UPPER_STRING,
+                         loaded.alphabet().toString());
+            assertEquals(4, loaded.n());
+            for (int k = 0; k < 26 * 26 * 26 * 26; k += 1) {
+                assertEquals(built.score(k), loaded.score(k), 0);
+            }
+
+            int[] cipher = factory.alphabet().indices(
+                factory.convert("* B III II I XYZ", plain));
+            int[] text = new int[cipher.length];
+            factory.acquire("* B III II I XYZ")
+                .convert(cipher, 0, cipher.length, text, 0);
+            assertArrayEquals(factory.alphabet().indices(plain), text);
+            double total = 0;
+            for (int i = 5; i + 4 <= 30; i += 1) {
+                total += loaded.score(text, i);
+            }
+            assertEquals(total, loaded.score(text, 5, 25), 1e-3);
+            assertEquals(built.score(text), loaded.score(text), 1e-3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadNgramFile() {
+        ByteBuffer data = ByteBuffer.allocate(16);
+        data.putInt(NgramTable.MAGIC).putInt(1).putInt(1000).flip();
+        NgramTable.read(data);
+    }
+
+}
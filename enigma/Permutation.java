@@ -1,12 +1,13 @@
 package enigma;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
- *  to the characters of an alphabet.
+ *  to the characters of an alphabet.  The cycles are compiled once, at
+ *  construction, into forward and inverse lookup tables.
  *  @author David Babazadeh
  */
 class Permutation {
@@ -18,15 +19,79 @@ class Permutation {
      *  Whitespace is ignored. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        if (cycles.length() > 2) {
-            if (cycles.charAt(0) != ('(')
-                    || cycles.charAt(cycles.length() - 1) != (')')) {
+        _cycles = new ArrayList<String>();
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < _forward.length; i += 1) {
+            _forward[i] = _inverse[i] = -1;
+        }
+
+        StringBuilder cycle = null;
+        for (int i = 0; i < cycles.length(); i += 1) {
+            char ch = cycles.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                continue;
+            } else if (ch == '(' && cycle == null) {
+                cycle = new StringBuilder();
+            } else if (ch == ')' && cycle != null) {
+                addCycle(cycle.toString());
+                cycle = null;
+            } else if (cycle != null && ch != '(') {
+                cycle.append(ch);
+            } else {
                 throw error("invalid cycle sequence %s", cycles);
             }
-            _cycles = Arrays.asList(cycles.substring(1, cycles.length() - 1)
-                    .split("\\)\\s*\\("));
-        } else {
-            _cycles = List.of("");
+        }
+        if (cycle != null) {
+            throw error("invalid cycle sequence %s", cycles);
+        }
+
+        _forwardChars = new char[_forward.length];
+        _inverseChars = new char[_forward.length];
+        for (int i = 0; i < _forward.length; i += 1) {
+            if (_forward[i] == -1) {
+                _forward[i] = _inverse[i] = i;
+            }
+            _forwardChars[i] = alphabet.toChar(_forward[i]);
+            _inverseChars[i] = alphabet.toChar(_inverse[i]);
+        }
+    }
+
+    /** The permutation of ALPHABET mapping K to FORWARD[K], whose
+     *  inverse maps K to INVERSE[K].  FORWARD and INVERSE are used
+     *  directly, and must not be modified afterwards. */
+    Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        int n = alphabet.size();
+        if (forward.length != n || inverse.length != n) {
+            throw error("invalid permutation tables: wrong size");
+        }
+        for (int k = 0; k < n; k += 1) {
+            if (forward[k] < 0 || forward[k] >= n
+                    || inverse[forward[k]] != k) {
+                throw error("invalid permutation tables: not inverses");
+            }
+        }
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+        _forwardChars = new char[n];
+        _inverseChars = new char[n];
+        for (int k = 0; k < n; k += 1) {
+            _forwardChars[k] = alphabet.toChar(forward[k]);
+            _inverseChars[k] = alphabet.toChar(inverse[k]);
+        }
+
+        _cycles = new ArrayList<String>();
+        boolean[] seen = new boolean[n];
+        for (int k = 0; k < n; k += 1) {
+            if (!seen[k] && forward[k] != k) {
+                StringBuilder cycle = new StringBuilder();
+                for (int j = k; !seen[j]; j = forward[j]) {
+                    seen[j] = true;
+                    cycle.append(alphabet.toChar(j));
+                }
+                _cycles.add(cycle.toString());
+            }
         }
     }
 
@@ -36,8 +101,31 @@ class Permutation {
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
+     *  c0c1...cm.  Each character must be in my alphabet and must not
+     *  already appear in another cycle. */
     private void addCycle(String cycle) {
+        int first = -1, prev = -1;
+        for (int i = 0; i < cycle.length(); i += 1) {
+            char ch = cycle.charAt(i);
+            if (!alphabet().contains(ch)) {
+                throw error("invalid cycle: character %c not in alphabet", ch);
+            }
+            int k = alphabet().toInt(ch);
+            if (_inverse[k] != -1 || k == first) {
+                throw error("invalid cycle: repeated character %c", ch);
+            }
+            if (prev == -1) {
+                first = k;
+            } else {
+                _forward[prev] = k;
+                _inverse[k] = prev;
+            }
+            prev = k;
+        }
+        if (first != -1) {
+            _forward[prev] = first;
+            _inverse[first] = prev;
+        }
         _cycles.add(cycle);
     }
 
@@ -52,52 +140,36 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return alphabet().size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        int pIndex = p;
-        char pChar = alphabet().toChar(wrap(p));
-        String pStr = Character.toString(pChar);
-        for (String cycle : _cycles) {
-            if (cycle.contains(pStr)) {
-                pChar = cycle.charAt((cycle.indexOf(pChar) + 1)
-                        % cycle.length());
-                pIndex = alphabet().toInt(pChar);
-                break;
-            }
+        if (p < 0 || p >= _forward.length) {
+            p = wrap(p);
         }
-        return pIndex;
+        return _forward[p];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size.  */
     int invert(int c) {
-        int cIndex = c;
-        char cChar = alphabet().toChar(wrap(c));
-        String cStr = Character.toString(cChar);
-        for (String cycle : _cycles) {
-            if (cycle.contains(cStr)) {
-                cIndex = alphabet().toInt(cycle.charAt(
-                        (cycle.indexOf(cChar) - 1 + cycle.length())
-                                % cycle.length()));
-                break;
-            }
+        if (c < 0 || c >= _inverse.length) {
+            c = wrap(c);
         }
-        return cIndex;
+        return _inverse[c];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        return alphabet().toChar(permute(alphabet().toInt(p)));
+        return _forwardChars[alphabet().toInt(p)];
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        return alphabet().toChar(invert(alphabet().toInt(c)));
+        return _inverseChars[alphabet().toInt(c)];
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -108,8 +180,8 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (int i = 0; i < alphabet().size(); i++) {
-            if (i == permute(i)) {
+        for (int i = 0; i < _forward.length; i++) {
+            if (i == _forward[i]) {
                 return false;
             }
         }
@@ -122,4 +194,16 @@ class Permutation {
     /** cycles this permutation maps to. */
     private List<String> _cycles;
 
+    /** _forward[K] is the index K maps to. */
+    private final int[] _forward;
+
+    /** _inverse[K] is the index that maps to K. */
+    private final int[] _inverse;
+
+    /** _forwardChars[K] is the character index K maps to. */
+    private final char[] _forwardChars;
+
+    /** _inverseChars[K] is the character that maps to index K. */
+    private final char[] _inverseChars;
+
 }
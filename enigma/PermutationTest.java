@@ -70,4 +70,25 @@ public class PermutationTest {
         assertTrue("true derangement():", perm.derangement());
     }
 
+    @Test
+    public void testAdjacentCycles() {
+        perm = new Permutation("(AZ)(COURT) (P)(LEGS)  (X)", UPPER);
+        checkPerm("adjacent", UPPER_STRING, "ZBODGFSHIJKEMNUPQTLCRVWXYA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeatedCharacter() {
+        perm = new Permutation("(AB) (CA)", UPPER);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCharacterNotInAlphabet() {
+        perm = new Permutation("(AB) (C8)", UPPER);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUnclosedCycle() {
+        perm = new Permutation("(AB) (CD", UPPER);
+    }
+
 }
@@ -0,0 +1,342 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Recovers the plugboard of a message whose rotors are known, by hill
+ *  climbing from the empty plugboard.  Each trial connects or
+ *  disconnects one pair of characters in a primitive swap table, and
+ *  is scored by n-gram statistics.  Since the rotors do not depend on
+ *  the plugboard, their substitution at each character of the message
+ *  is computed once.  A trial then redecrypts only the characters whose
+ *  ciphertext or current decryption involves one of the (at most four)
+ *  characters whose plug it changes, and rescores only the n-grams that
+ *  contain them, so that it allocates nothing and costs time in
+ *  proportion to the characters it affects.
+ *  @author David Babazadeh
+ */
+final class PlugboardSolver {
+
+    /** A solver for CIPHERTEXT (whose whitespace is ignored) as
+     *  encrypted by MACH from its current rotor settings, scoring with
+     *  NGRAMS, which must be over MACH's alphabet.  MACH is left as it
+     *  was. */
+    PlugboardSolver(Machine mach, String ciphertext, NgramTable ngrams) {
+        Alphabet alpha = mach.alphabet();
+        if (!alpha.toString().equals(ngrams.alphabet().toString())) {
+            throw error("n-gram table has the wrong alphabet");
+        }
+        _alphabet = alpha;
+        _size = alpha.size();
+        _ngrams = ngrams;
+        _n = ngrams.n();
+
+        _cipher = alpha.indices(ciphertext);
+        int len = _cipher.length;
+
+        Permutation plugboard = mach.plugboard();
+        mach.setPlugboard(new Permutation("", alpha));
+        KeystreamTable table;
+        int state;
+        try {
+            table = new KeystreamTable(mach);
+            state = table.state(mach);
+        } finally {
+            mach.setPlugboard(plugboard);
+        }
+        _scrambler = new byte[len * _size];
+        for (int t = 0; t < len; t += 1) {
+            state = table.next(state);
+            for (int c = 0; c < _size; c += 1) {
+                _scrambler[t * _size + c] = (byte) table.convert(state, c);
+            }
+        }
+
+        _plug = new int[_size];
+        _plain = new int[len];
+        _windowScores = new float[Math.max(0, len - _n + 1)];
+        _cipherAt = positions(_cipher);
+        _plainAt = new int[_size][];
+        _plainCounts = new int[_size];
+        _affected = new int[len];
+        _oldPlain = new int[len];
+        _windows = new int[_windowScores.length];
+        _oldWindowScores = new float[_windowScores.length];
+        _stamp = new int[len];
+        _windowStamp = new int[_windowScores.length];
+        reset();
+    }
+
+    /** Return the best plugboard found by hill climbing from the empty
+     *  plugboard, connecting at most MAXPAIRS pairs. */
+    Permutation solve(int maxPairs) {
+        reset();
+        int pairs = 0;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a + 1; b < _size; b += 1) {
+                    int change = pairsChange(a, b);
+                    if (pairs + change <= maxPairs && tryToggle(a, b)) {
+                        pairs += change;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return plugboard();
+    }
+
+    /** Return the n-gram score of the decryption with my current
+     *  plugboard. */
+    double score() {
+        double total = 0;
+        for (float s : _windowScores) {
+            total += s;
+        }
+        return total;
+    }
+
+    /** Return my current plugboard. */
+    Permutation plugboard() {
+        return new Permutation(_plug.clone(), _plug.clone(), _alphabet);
+    }
+
+    /** Return the decryption with my current plugboard. */
+    String plaintext() {
+        char[] result = new char[_plain.length];
+        for (int t = 0; t < result.length; t += 1) {
+            result[t] = _alphabet.toChar(_plain[t]);
+        }
+        return new String(result);
+    }
+
+    /** Disconnect every plug and decrypt from scratch. */
+    private void reset() {
+        for (int c = 0; c < _size; c += 1) {
+            _plug[c] = c;
+        }
+        for (int t = 0; t < _plain.length; t += 1) {
+            _plain[t] = decrypt(t);
+        }
+        for (int w = 0; w < _windowScores.length; w += 1) {
+            _windowScores[w] = _ngrams.score(_plain, w);
+        }
+        indexPlaintext();
+    }
+
+    /** Return the change in the number of connected pairs made by
+     *  toggle(A, B). */
+    private int pairsChange(int a, int b) {
+        if (_plug[a] == b) {
+            return -1;
+        }
+        return 1 - (_plug[a] != a ? 1 : 0) - (_plug[b] != b ? 1 : 0);
+    }
+
+    /** Disconnect A and B if they are connected to each other, and
+     *  otherwise connect them, first disconnecting each from any other
+     *  partner. */
+    private void toggle(int a, int b) {
+        if (_plug[a] == b) {
+            _plug[a] = a;
+            _plug[b] = b;
+        } else {
+            _plug[_plug[a]] = _plug[a];
+            _plug[_plug[b]] = _plug[b];
+            _plug[a] = b;
+            _plug[b] = a;
+        }
+    }
+
+    /** Apply toggle(A, B), keeping it and returning true iff it improves
+     *  the score. */
+    private boolean tryToggle(int a, int b) {
+        int pa = _plug[a], pb = _plug[b];
+        _epoch += 1;
+        int affected = collect(a, 0);
+        affected = collect(b, affected);
+        affected = collect(pa, affected);
+        affected = collect(pb, affected);
+
+        int windows = 0;
+        double delta = 0;
+        for (int i = 0; i < affected; i += 1) {
+            int t = _affected[i];
+            for (int w = Math.max(0, t - _n + 1);
+                 w <= t && w < _windowScores.length; w += 1) {
+                if (_windowStamp[w] != _epoch) {
+                    _windowStamp[w] = _epoch;
+                    _windows[windows] = w;
+                    windows += 1;
+                    delta -= _windowScores[w];
+                }
+            }
+        }
+
+        toggle(a, b);
+        for (int i = 0; i < affected; i += 1) {
+            int t = _affected[i];
+            _oldPlain[i] = _plain[t];
+            _plain[t] = decrypt(t);
+        }
+        for (int i = 0; i < windows; i += 1) {
+            int w = _windows[i];
+            _oldWindowScores[i] = _windowScores[w];
+            _windowScores[w] = _ngrams.score(_plain, w);
+            delta += _windowScores[w];
+        }
+
+        if (delta > EPSILON) {
+            indexPlaintext();
+            return true;
+        }
+        _plug[pa] = a;
+        _plug[pb] = b;
+        _plug[a] = pa;
+        _plug[b] = pb;
+        for (int i = 0; i < affected; i += 1) {
+            _plain[_affected[i]] = _oldPlain[i];
+        }
+        for (int i = 0; i < windows; i += 1) {
+            _windowScores[_windows[i]] = _oldWindowScores[i];
+        }
+        return false;
+    }
+
+    /** Add the positions at which C occurs in the ciphertext or the
+     *  current decryption, and which have not already been collected in
+     *  this trial, to _affected, which holds COUNT of them, and return
+     *  the new count. */
+    private int collect(int c, int count) {
+        count = collect(_cipherAt[c], _cipherAt[c].length, count);
+        return collect(_plainAt[c], _plainCounts[c], count);
+    }
+
+    /** Add the first N positions of POSITIONS not already collected in
+     *  this trial to _affected, which holds COUNT of them, and return
+     *  the new count. */
+    private int collect(int[] positions, int n, int count) {
+        for (int i = 0; i < n; i += 1) {
+            int t = positions[i];
+            if (_stamp[t] != _epoch) {
+                _stamp[t] = _epoch;
+                _affected[count] = t;
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Return the decryption of the character at position T of the
+     *  ciphertext with my current plugboard. */
+    private int decrypt(int t) {
+        return _plug[_scrambler[t * _size + _plug[_cipher[t]]] & 0xff];
+    }
+
+    /** Rebuild the lists of positions of each character of the current
+     *  decryption. */
+    private void indexPlaintext() {
+        Arrays.fill(_plainCounts, 0);
+        for (int c : _plain) {
+            _plainCounts[c] += 1;
+        }
+        for (int c = 0; c < _size; c += 1) {
+            if (_plainAt[c] == null || _plainAt[c].length < _plainCounts[c]) {
+                _plainAt[c] = new int[_plainCounts[c]];
+            }
+        }
+        Arrays.fill(_plainCounts, 0);
+        for (int t = 0; t < _plain.length; t += 1) {
+            int c = _plain[t];
+            _plainAt[c][_plainCounts[c]] = t;
+            _plainCounts[c] += 1;
+        }
+    }
+
+    /** Return an array whose Cth element lists the positions of
+     *  character C in TEXT. */
+    private int[][] positions(int[] text) {
+        int[] counts = new int[_size];
+        for (int c : text) {
+            counts[c] += 1;
+        }
+        int[][] result = new int[_size][];
+        for (int c = 0; c < _size; c += 1) {
+            result[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int t = 0; t < text.length; t += 1) {
+            result[text[t]][counts[text[t]]] = t;
+            counts[text[t]] += 1;
+        }
+        return result;
+    }
+
+    /** Smallest improvement in score worth keeping. */
+    private static final double EPSILON = 1e-6;
+
+    /** Alphabet of the message. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Scores of n-grams. */
+    private final NgramTable _ngrams;
+
+    /** Length of the n-grams of _ngrams. */
+    private final int _n;
+
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+
+    /** _scrambler[T * _size + C] is the result of passing C through the
+     *  rotors as they are at position T of the message. */
+    private final byte[] _scrambler;
+
+    /** The plugboard: _plug[C] is the character connected to C, or C. */
+    private final int[] _plug;
+
+    /** The decryption with the plugboard _plug. */
+    private final int[] _plain;
+
+    /** _windowScores[W] is the score of the n-gram of _plain at W. */
+    private final float[] _windowScores;
+
+    /** _cipherAt[C] lists the positions of C in _cipher. */
+    private final int[][] _cipherAt;
+
+    /** The first _plainCounts[C] elements of _plainAt[C] list the
+     *  positions of C in _plain. */
+    private final int[][] _plainAt;
+
+    /** Lengths of the lists in _plainAt. */
+    private final int[] _plainCounts;
+
+    /** Positions redecrypted by the current trial. */
+    private final int[] _affected;
+
+    /** _oldPlain[I] is the decryption at _affected[I] before the
+     *  trial. */
+    private final int[] _oldPlain;
+
+    /** N-gram positions rescored by the current trial. */
+    private final int[] _windows;
+
+    /** _oldWindowScores[I] is the score at _windows[I] before the
+     *  trial. */
+    private final float[] _oldWindowScores;
+
+    /** _stamp[T] == _epoch iff position T is in _affected. */
+    private final int[] _stamp;
+
+    /** _windowStamp[W] == _epoch iff W is in _windows. */
+    private final int[] _windowStamp;
+
+    /** Number of the current trial. */
+    private int _epoch;
+
+}
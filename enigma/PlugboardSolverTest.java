@@ -0,0 +1,41 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the PlugboardSolver class.
+ *  @author David Babazadeh
+ */
+public class PlugboardSolverTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSolve() {
+        MachineFactory factory = KeySearchTest.factory("I", "II", "III",
+                                                       "IV", "V");
+        String plain = KeySearchTest.PLAIN;
+        String cipher = factory.convert("* B V II IV QRS (AM) (FI) (NV) "
+                                        + "(PS) (TU) (WZ)", plain);
+        NgramTable trigrams = NgramTable.build(factory.alphabet(), 3, plain);
+        Machine mach = factory.acquire("* B V II IV QRS");
+        PlugboardSolver solver = new PlugboardSolver(mach, cipher, trigrams);
+        Permutation plugboard = solver.solve(10);
+        assertEquals("[AM, FI, NV, PS, TU, WZ]", plugboard.getCycles());
+        assertEquals(plain, solver.plaintext());
+        double score = 0;
+        for (int i = 0; i + 3 <= plain.length(); i += 1) {
+            score += trigrams.score(new int[] {
+                plain.charAt(i) - 'A', plain.charAt(i + 1) - 'A',
+                plain.charAt(i + 2) - 'A' }, 0);
+        }
+        assertEquals(score, solver.score(), 1e-3);
+    }
+
+}
@@ -14,10 +14,8 @@ class Reflector extends FixedRotor {
     }
 
     @Override
-    void set(int posn) {
-        if (posn != 0) {
-            throw error("reflector has only one position");
-        }
+    boolean reflecting() {
+        return true;
     }
 
 }
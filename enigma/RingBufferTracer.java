@@ -0,0 +1,179 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static enigma.EnigmaException.*;
+
+/** A Tracer that records conversions into a preallocated ring buffer
+ *  and formats them on a background thread, one line per character in
+ *  the form "[SETTINGS] C -> ... -> E".
+ *  @author David Babazadeh
+ */
+final class RingBufferTracer implements Tracer {
+
+    /** A tracer that writes the values it records, as characters of
+     *  ALPHABET, to OUT. */
+    RingBufferTracer(Alphabet alphabet, PrintStream out) {
+        this(alphabet, out, DEFAULT_CAPACITY);
+    }
+
+    /** A tracer that writes the values it records, as characters of
+     *  ALPHABET, to OUT, buffering up to CAPACITY (a power of two)
+     *  values. */
+    RingBufferTracer(Alphabet alphabet, PrintStream out, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw error("tracer capacity must be a power of two");
+        }
+        _alphabet = alphabet;
+        _out = out;
+        _buffer = new int[capacity];
+        _mask = capacity - 1;
+        _formatter = new Thread(this::format, "enigma-tracer");
+        _formatter.setDaemon(true);
+        _formatter.start();
+    }
+
+    @Override
+    public boolean enabled() {
+        return true;
+    }
+
+    @Override
+    public void keypress(int[] settings, int c) {
+        for (int s : settings) {
+            put(SETTING | s);
+        }
+        put(INPUT | c);
+    }
+
+    @Override
+    public void stage(int c) {
+        put(STAGE | c);
+    }
+
+    @Override
+    public void end(int c) {
+        put(END | c);
+        _written.lazySet(_next);
+    }
+
+    @Override
+    public void close() {
+        _written.set(_next);
+        _closed = true;
+        LockSupport.unpark(_formatter);
+        try {
+            _formatter.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        _out.flush();
+    }
+
+    /** Append the record VALUE, waiting for the formatter to make room
+     *  if the buffer is full. */
+    private void put(int value) {
+        if (_next - _readCache > _mask) {
+            _written.set(_next);
+            LockSupport.unpark(_formatter);
+            while (_next - (_readCache = _read.get()) > _mask) {
+                Thread.onSpinWait();
+            }
+        }
+        _buffer[(int) _next & _mask] = value;
+        _next += 1;
+    }
+
+    /** Body of the formatting thread: print records as they become
+     *  available until closed. */
+    private void format() {
+        StringBuilder line = new StringBuilder();
+        long read = 0;
+        boolean inLine = false;
+        while (true) {
+            long written = _written.get();
+            if (read == written) {
+                if (_closed && read == _written.get()) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            for (; read < written; read += 1) {
+                int value = _buffer[(int) read & _mask];
+                char c = _alphabet.toChar(value & VALUE);
+                switch (value & ~VALUE) {
+                case SETTING -> {
+                    if (!inLine) {
+                        line.append('[');
+                        inLine = true;
+                    }
+                    line.append(c);
+                }
+                case INPUT -> {
+                    if (!inLine) {
+                        line.append('[');
+                    }
+                    line.append("] ").append(c).append(" -> ");
+                    inLine = true;
+                }
+                case STAGE -> line.append(c).append(" -> ");
+                default -> {
+                    line.append(c).append(System.lineSeparator());
+                    inLine = false;
+                }
+                }
+            }
+            _read.lazySet(read);
+            _out.append(line);
+            line.setLength(0);
+        }
+    }
+
+    /** Default number of values buffered. */
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** Time the formatter sleeps when it has nothing to do. */
+    private static final long IDLE_NANOS = 100_000;
+
+    /** Bits of a record holding its value. */
+    private static final int VALUE = 0xffff;
+
+    /** Record kinds: a rotor setting, the character converted, an
+     *  intermediate value, and the result. */
+    private static final int SETTING = 0 << 16, INPUT = 1 << 16,
+        STAGE = 2 << 16, END = 3 << 16;
+
+    /** Alphabet used to print values. */
+    private final Alphabet _alphabet;
+
+    /** Destination of formatted traces. */
+    private final PrintStream _out;
+
+    /** Recorded values, used circularly. */
+    private final int[] _buffer;
+
+    /** Mask reducing a sequence number to an index into _buffer. */
+    private final int _mask;
+
+    /** Thread that formats records. */
+    private final Thread _formatter;
+
+    /** Sequence number of the next record to be written (writer only). */
+    private long _next;
+
+    /** Last value of _read seen by the writer. */
+    private long _readCache;
+
+    /** Number of records published to the formatter. */
+    private final AtomicLong _written = new AtomicLong();
+
+    /** Number of records the formatter has finished with. */
+    private final AtomicLong _read = new AtomicLong();
+
+    /** True once close() has been called. */
+    private volatile boolean _closed;
+
+}
@@ -0,0 +1,388 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A search for the ring settings of the fast and middle rotors of a
+ *  message whose wheel order, rotor positions and plugboard are
+ *  otherwise known, scoring each trial decryption by n-gram statistics.
+ *
+ *  <p>A ring setting only offsets a rotor's notches from its wiring: the
+ *  substitution made at each position of the rotor cores (setting less
+ *  ring) does not depend on it.  So every trial keeps the core positions
+ *  of the given settings, reads its substitutions from one
+ *  KeystreamTable, and differs from the others only in when the rotors
+ *  turn over.  For each fast ring, the message is decrypted once as if
+ *  the middle rotor had no notch, keeping the running n-gram score and
+ *  the times at which the middle rotor moves.  A middle ring then
+ *  changes nothing until the middle rotor first stands at its notch, so
+ *  each trial redecrypts and rescores only the rest of the message, and
+ *  none of it if that never happens.  The last table built is kept for
+ *  the next search with the same rotors, non-moving positions and
+ *  plugboard, such as the next candidate of a KeySearch with the same
+ *  wheel order.
+ *  @author David Babazadeh
+ */
+final class RingSearch {
+
+    /** A search for the rings of the machines made by FACTORY, which
+     *  must have at least two moving rotors, scoring with NGRAMS, which
+     *  must be over FACTORY's alphabet. */
+    RingSearch(MachineFactory factory, NgramTable ngrams) {
+        if (!factory.alphabet().toString()
+            .equals(ngrams.alphabet().toString())) {
+            throw error("n-gram table has the wrong alphabet");
+        } else if (factory.numPawls() < 2) {
+            throw error("ring search needs two moving rotors");
+        }
+        _factory = factory;
+        _ngrams = ngrams;
+    }
+
+    /** Return the best ring settings for CIPHERTEXT (whose whitespace is
+     *  ignored) with the wheel order, plugboard and core positions
+     *  (settings less rings) given by the settings line SETTINGS, trying
+     *  every ring setting of the fast and middle rotors.  The rings of
+     *  the other rotors are kept. */
+    Result search(String settings, String ciphertext) {
+        Machine mach = _factory.newMachine();
+        mach.setUp(settings);
+        Sweep sweep = new Sweep(mach, table(mach, settings),
+                                _factory.alphabet().indices(ciphertext));
+        int size = _factory.alphabet().size();
+        int fast = mach.numRotors() - 1, middle = fast - 1;
+
+        double best = Double.NEGATIVE_INFINITY;
+        int bestFast = 0, bestMiddle = 0;
+        for (int f = 0; f < size; f += 1) {
+            sweep.baseline(f);
+            for (int m = 0; m < size; m += 1) {
+                double score = sweep.score(m);
+                if (score > best) {
+                    best = score;
+                    bestFast = f;
+                    bestMiddle = m;
+                }
+            }
+        }
+
+        int[] rings = new int[mach.numRotors()];
+        for (int i = 1; i < rings.length; i += 1) {
+            rings[i] = mach.ring(i);
+        }
+        rings[fast] = bestFast;
+        rings[middle] = bestMiddle;
+        return new Result(mach, rings, plugboardCycles(settings), best);
+    }
+
+    /** Return a KeystreamTable for the rotors, non-moving rotor
+     *  positions and plugboard of MACH, set up from the settings line
+     *  SETTINGS, reusing the last one built if they are the same. */
+    private synchronized KeystreamTable table(Machine mach,
+                                              String settings) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < mach.numRotors(); i += 1) {
+            key.append(mach.getRotor(i).name()).append(' ');
+            if (i < mach.numRotors() - mach.numPawls()) {
+                key.append(mach.setting(i)).append(' ');
+            }
+        }
+        key.append(plugboardCycles(settings));
+        if (_table == null || !_tableKey.equals(key.toString())) {
+            _table = new KeystreamTable(mach);
+            _tableKey = key.toString();
+        }
+        return _table;
+    }
+
+    /** Return the plugboard cycles of the settings line SETTINGS,
+     *  preceded by a blank, or "" if there are none. */
+    private static String plugboardCycles(String settings) {
+        int k = settings.indexOf('(');
+        return k < 0 ? "" : " " + settings.substring(k);
+    }
+
+    /** The state of one search: the message and the stepping of the
+     *  rotors under the ring settings being tried. */
+    private final class Sweep {
+
+        /** A sweep for the rotors and core positions of MACH, whose
+         *  substitutions are read from TABLE, and the message CIPHER,
+         *  given as alphabet indices. */
+        Sweep(Machine mach, KeystreamTable table, int[] cipher) {
+            _table = table;
+            _size = _table.size();
+            _pawls = mach.numPawls();
+            _moving = new Rotor[_pawls];
+            _start = new int[_pawls];
+            _posns = new int[_pawls];
+            _advances = new boolean[_pawls];
+            _notched = new boolean[_pawls][_size];
+            _weights = new int[_pawls];
+            int first = mach.numRotors() - _pawls;
+            for (int i = _pawls - 1; i >= 0; i -= 1) {
+                _moving[i] = mach.getRotor(first + i);
+                setRing(i, mach.ring(first + i));
+                _start[i] = mach.setting(first + i);
+                _weights[i] = i == _pawls - 1 ? 1 : _weights[i + 1] * _size;
+            }
+            _cipher = cipher;
+            int len = cipher.length, n = _ngrams.n();
+            _base = new int[len];
+            _trial = new int[len];
+            _states = new int[len];
+            _prefix = new double[Math.max(0, len - n + 1) + 1];
+            _moveTimes = new int[len + 1];
+            _movePosns = new int[len + 1];
+        }
+
+        /** Decrypt the whole message with fast ring FAST and the middle
+         *  rotor's notch ignored, recording the state before each
+         *  keypress, the running n-gram score and the times at which the
+         *  middle rotor moves. */
+        void baseline(int fast) {
+            int middle = _pawls - 2;
+            setRing(_pawls - 1, fast);
+            int start = 0;
+            for (int i = 0; i < _pawls; i += 1) {
+                start += _start[i] * _weights[i];
+            }
+            setState(start);
+            _moves = 0;
+            for (int t = 0; t < _cipher.length; t += 1) {
+                if (t == 0 || _posns[middle] != _movePosns[_moves - 1]) {
+                    _moveTimes[_moves] = t;
+                    _movePosns[_moves] = _posns[middle];
+                    _moves += 1;
+                }
+                _states[t] = _state;
+                step(false);
+                _base[t] = _table.convert(_state, _cipher[t]);
+            }
+            for (int w = 0; w + 1 < _prefix.length; w += 1) {
+                _prefix[w + 1] = _prefix[w] + _ngrams.score(_base, w);
+            }
+        }
+
+        /** Return the n-gram score of the message decrypted with the fast
+         *  ring of the last baseline and middle ring MIDDLE. */
+        double score(int middle) {
+            int len = _cipher.length;
+            int turn = turnover(middle);
+            if (turn == len) {
+                return _prefix[_prefix.length - 1];
+            }
+
+            setRing(_pawls - 2, middle);
+            setState(_states[turn]);
+            int from = Math.max(0, Math.min(turn - _ngrams.n() + 1,
+                                            _prefix.length - 1));
+            System.arraycopy(_base, from, _trial, from, turn - from);
+            for (int t = turn; t < len; t += 1) {
+                step(true);
+                _trial[t] = _table.convert(_state, _cipher[t]);
+            }
+            return _prefix[from] + _ngrams.score(_trial, from, len - from);
+        }
+
+        /** Return the first time at which the middle rotor stands at its
+         *  notch under ring MIDDLE in the last baseline, or the length
+         *  of the message if it never does. */
+        private int turnover(int middle) {
+            int k = _pawls - 2;
+            if (k == 0) {
+                return _cipher.length;
+            }
+            for (int i = 0; i < _moves; i += 1) {
+                if (_moving[k].atNotch(_movePosns[i], middle)) {
+                    return _moveTimes[i];
+                }
+            }
+            return _cipher.length;
+        }
+
+        /** Advance the moving rotors from _posns as Machine does, taking
+         *  the notch of the middle rotor into account iff NOTCH. */
+        private void step(boolean notch) {
+            int fast = _pawls - 1;
+            for (int i = 0; i < fast; i += 1) {
+                _advances[i] = false;
+            }
+            for (int i = 1; i < fast; i += 1) {
+                if ((notch || i < fast - 1) && _notched[i][_posns[i]]) {
+                    _advances[i] = true;
+                    _advances[i - 1] = true;
+                }
+            }
+            if (_notched[fast][_posns[fast]]) {
+                _advances[fast - 1] = true;
+            }
+            for (int i = 0; i < fast; i += 1) {
+                if (_advances[i]) {
+                    advance(i);
+                }
+            }
+            advance(fast);
+        }
+
+        /** Advance moving rotor I, updating _state. */
+        private void advance(int i) {
+            if (_posns[i] + 1 == _size) {
+                _posns[i] = 0;
+                _state -= (_size - 1) * _weights[i];
+            } else {
+                _posns[i] += 1;
+                _state += _weights[i];
+            }
+        }
+
+        /** Set the moving rotors to the positions of STATE. */
+        private void setState(int state) {
+            _state = state;
+            for (int i = _pawls - 1; i >= 0; i -= 1) {
+                _posns[i] = state % _size;
+                state /= _size;
+            }
+        }
+
+        /** Set the ring of moving rotor I to RING. */
+        private void setRing(int i, int ring) {
+            for (int p = 0; p < _size; p += 1) {
+                _notched[i][p] = _moving[i].atNotch(p, ring);
+            }
+        }
+
+        /** Substitutions at each core position of the moving rotors. */
+        private final KeystreamTable _table;
+
+        /** Size of the alphabet. */
+        private final int _size;
+
+        /** Number of moving rotors. */
+        private final int _pawls;
+
+        /** The moving rotors, from left to right. */
+        private final Rotor[] _moving;
+
+        /** Core positions of _moving at the start of the message. */
+        private final int[] _start;
+
+        /** Core positions of _moving as the message is decrypted. */
+        private final int[] _posns;
+
+        /** _advances[I] iff _moving[I] advances on the current keypress. */
+        private final boolean[] _advances;
+
+        /** _notched[I][P] iff _moving[I] is at a notch at core position P
+         *  with the ring being tried. */
+        private final boolean[][] _notched;
+
+        /** _weights[I] is the place value of _moving[I] in a state. */
+        private final int[] _weights;
+
+        /** State of the KeystreamTable for _posns. */
+        private int _state;
+
+        /** The message, as alphabet indices. */
+        private final int[] _cipher;
+
+        /** The decryption made by the last baseline. */
+        private final int[] _base;
+
+        /** The decryption made by the last call of score. */
+        private final int[] _trial;
+
+        /** _states[T] is the state before keypress T in the last
+         *  baseline. */
+        private final int[] _states;
+
+        /** _prefix[W] is the total score of the first W n-grams of
+         *  _base. */
+        private final double[] _prefix;
+
+        /** In the last baseline, the middle rotor moved to
+         *  _movePosns[I] before keypress _moveTimes[I], for I < _moves
+         *  (counting its starting position as a move at 0). */
+        private final int[] _moveTimes, _movePosns;
+
+        /** Number of moves recorded by the last baseline. */
+        private int _moves;
+    }
+
+    /** The ring settings found by a search. */
+    static final class Result {
+
+        /** The result for the rotors of MACH at its core positions with
+         *  ring settings RINGS (indexed like MACH's rotors), plugboard
+         *  PLUGBOARD, given as it appears in a settings line, and n-gram
+         *  score SCORE. */
+        private Result(Machine mach, int[] rings, String plugboard,
+                       double score) {
+            Alphabet alpha = mach.alphabet();
+            StringBuilder line = new StringBuilder("*");
+            for (int i = 0; i < mach.numRotors(); i += 1) {
+                line.append(' ').append(mach.getRotor(i).name());
+            }
+            char[] setting = new char[rings.length - 1];
+            char[] ringstellung = new char[rings.length - 1];
+            for (int i = 1; i < rings.length; i += 1) {
+                setting[i - 1] = alpha.toChar((mach.setting(i) + rings[i])
+                                              % alpha.size());
+                ringstellung[i - 1] = alpha.toChar(rings[i]);
+            }
+            _setting = new String(setting);
+            _rings = new String(ringstellung);
+            line.append(' ').append(_setting).append(' ').append(_rings)
+                .append(plugboard);
+            _settingsLine = line.toString();
+            _score = score;
+        }
+
+        /** Return the settings of my rotors, leftmost first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the ring settings of my rotors, leftmost first. */
+        String rings() {
+            return _rings;
+        }
+
+        /** Return the n-gram score of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Return a settings line that sets a machine to me. */
+        String settingsLine() {
+            return _settingsLine;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.2f)", _settingsLine, _score);
+        }
+
+        /** Settings and ring settings of my rotors. */
+        private final String _setting, _rings;
+
+        /** Settings line for me. */
+        private final String _settingsLine;
+
+        /** N-gram score of my decryption. */
+        private final double _score;
+    }
+
+    /** Source of my machines. */
+    private final MachineFactory _factory;
+
+    /** Scores of n-grams. */
+    private final NgramTable _ngrams;
+
+    /** The last KeystreamTable built. */
+    private KeystreamTable _table;
+
+    /** Names and non-moving positions of the rotors and plugboard of
+     *  _table. */
+    private String _tableKey;
+
+}
@@ -0,0 +1,53 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the RingSearch class.
+ *  @author David Babazadeh
+ */
+public class RingSearchTest {
+
+    /** Testing time limit.  */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTS ***** */
+
+    private static final String STECKERS = " (AM) (FI) (NV) (PS) (TU) (WZ)";
+
+    @Test
+    public void testSearch() {
+        MachineFactory factory = KeySearchTest.factory("I", "II", "III",
+                                                       "IV", "V");
+        String plain = KeySearchTest.PLAIN;
+        String cipher =
+            factory.convert("* B V II IV QRS AKM" + STECKERS, plain);
+        NgramTable trigrams = NgramTable.build(factory.alphabet(), 3, plain);
+        RingSearch search = new RingSearch(factory, trigrams);
+
+        RingSearch.Result result =
+            search.search("* B V II IV QHG" + STECKERS, cipher);
+        assertEquals(plain, factory.convert(result.settingsLine(), cipher));
+        assertEquals('A', result.rings().charAt(0));
+        assertEquals('M', result.rings().charAt(2));
+        assertEquals(trigrams.score(factory.alphabet().indices(plain)),
+                     result.score(), 1e-3);
+
+        double best = Double.NEGATIVE_INFINITY;
+        Alphabet alpha = factory.alphabet();
+        for (int m = 0; m < alpha.size(); m += 1) {
+            for (int f = 0; f < alpha.size(); f += 1) {
+                String line = "* B V II IV Q" + alpha.toChar((7 + m) % 26)
+                    + alpha.toChar((6 + f) % 26) + " A" + alpha.toChar(m)
+                    + alpha.toChar(f) + STECKERS;
+                best = Math.max(best, trigrams.score(
+                    alpha.indices(factory.convert(line, cipher))));
+            }
+        }
+        assertEquals(best, result.score(), 1e-6);
+    }
+
+}
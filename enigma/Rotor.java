@@ -2,7 +2,11 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents a rotor in the enigma machine.  A rotor's
+ *  name, wiring and notches never change, so one rotor may be used by
+ *  any number of machines at once: each machine keeps the settings and
+ *  ring settings of its rotors itself, and passes them to the rotor
+ *  wherever they matter.
  *  @author David Babazadeh
  */
 class Rotor {
@@ -13,10 +17,8 @@ class Rotor {
             throw error("invalid rotor name: %s", name);
         }
 
-        _ring = 0;
         _name = name;
         _permutation = perm;
-        _position = 0;
     }
 
     /** Return my name. */
@@ -49,41 +51,28 @@ class Rotor {
         return false;
     }
 
-    /** Return my current setting. */
-    int setting() {
-        return _position;
-    }
-
-    /** Set setting() to POSN.  */
-    void set(int posn) {
-        _position = permutation().wrap(posn);
-    }
-
-    /** Set setting() to character CPOSN. */
-    void set(char cposn) {
-        set(_permutation.alphabet().toInt(cposn));
-    }
-
     /** Return the conversion of P (an integer in the range 0..size()-1)
-     *  according to my permutation. */
-    int convertForward(int p) {
-        int result = permutation().wrap(permutation()
-                .permute(p + setting()) - setting());
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        return result;
+     *  according to my permutation when I am at SETTING. */
+    int convertForward(int p, int setting) {
+        return tables().forward()[setting * size() + p];
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
-    int convertBackward(int e) {
-        int result = permutation().wrap(permutation()
-                .invert(e + setting()) - setting());
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
+     *  according to the inverse of my permutation when I am at
+     *  SETTING. */
+    int convertBackward(int e, int setting) {
+        return tables().backward()[setting * size() + e];
+    }
+
+    /** Return the substitution tables of my wiring, building them on
+     *  first use.  RotorTables is immutable, so threads racing to build
+     *  them may each see any of the equal results. */
+    RotorTables tables() {
+        RotorTables tables = _tables;
+        if (tables == null) {
+            tables = _tables = RotorTables.of(_permutation);
         }
-        return result;
+        return tables;
     }
 
     /** Returns the positions of the notches, as a string giving the letters
@@ -92,33 +81,10 @@ class Rotor {
         return "";
     }
 
-    /** returns int corresponding to reference of ring.
-     * compensates for ringstellung */
-    public int ring() {
-        return _ring;
-    }
-
-    /** sets ring corresponding to reference char CH.
-     * compensates for ringstellung */
-    public void setRing(char ch) {
-        _ring = alphabet().toInt(ch);
-    }
-
-    /** sets ring corresponding to reference int P.
-     * compensates for ringstellung */
-    public void setRing(int p) {
-        _ring = p;
-    }
-
-    /** Returns true iff I am positioned to allow the rotor to my left
-     *  to advance. */
-    boolean atNotch() {
-        return notches().contains(Character
-                .toString(_permutation.alphabet().toChar(setting())));
-    }
-
-    /** Advance me one position, if possible. By default, does nothing. */
-    void advance() {
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  when at SETTING with ring setting RING.  By default, never. */
+    boolean atNotch(int setting, int ring) {
+        return false;
     }
 
     @Override
@@ -130,12 +96,10 @@ class Rotor {
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
-
-    /** current position rotor is set to. */
-    private int _position;
+    private final Permutation _permutation;
 
-    /** ringstellng index for rotor's alphabet ring. */
-    private int _ring;
+    /** Substitution tables of my wiring at each setting, or null if
+     *  not yet needed. */
+    private RotorTables _tables;
 
 }
@@ -0,0 +1,114 @@
+package enigma;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/** The substitutions performed by a rotor wiring at each of its
+ *  positions.  Entry S * size() + P of forward() is the result of
+ *  passing P through the wiring when it is at setting S, and likewise
+ *  for backward() with the inverse wiring.  Tables are shared by all
+ *  rotors whose permutations map the same way.
+ *  @author David Babazadeh
+ */
+final class RotorTables {
+
+    /** Tables for a wiring mapping K to FORWARD[K]. */
+    private RotorTables(Wiring forward) {
+        int n = forward._map.length;
+        _wiring = forward;
+        _forward = new int[n * n];
+        _backward = new int[n * n];
+        int[] inverse = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            inverse[forward._map[k]] = k;
+        }
+        for (int s = 0; s < n; s += 1) {
+            for (int p = 0; p < n; p += 1) {
+                int q = p + s < n ? p + s : p + s - n;
+                int f = forward._map[q] - s, b = inverse[q] - s;
+                _forward[s * n + p] = f < 0 ? f + n : f;
+                _backward[s * n + p] = b < 0 ? b + n : b;
+            }
+        }
+    }
+
+    /** Return the tables for PERM, building them if no rotor with the
+     *  same wiring has needed them yet. */
+    static RotorTables of(Permutation perm) {
+        int[] map = new int[perm.size()];
+        for (int k = 0; k < map.length; k += 1) {
+            map[k] = perm.permute(k);
+        }
+        Wiring key = new Wiring(map);
+        synchronized (CACHE) {
+            WeakReference<RotorTables> ref = CACHE.get(key);
+            RotorTables tables = ref == null ? null : ref.get();
+            if (tables == null) {
+                tables = new RotorTables(key);
+                CACHE.put(key, new WeakReference<>(tables));
+            }
+            return tables;
+        }
+    }
+
+    /** Return the number of positions (and characters) of my wiring. */
+    int size() {
+        return _wiring._map.length;
+    }
+
+    /** Return the forward substitutions, indexed by setting * size() +
+     *  input.  Must not be modified. */
+    int[] forward() {
+        return _forward;
+    }
+
+    /** Return the backward substitutions, indexed by setting * size() +
+     *  input.  Must not be modified. */
+    int[] backward() {
+        return _backward;
+    }
+
+    /** A wiring, compared by the mapping it performs. */
+    private static final class Wiring {
+
+        /** The wiring that maps K to MAP[K]. */
+        Wiring(int[] map) {
+            _map = map;
+            _hash = Arrays.hashCode(map);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Wiring
+                && Arrays.equals(_map, ((Wiring) obj)._map);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** Index K is wired to _map[K]. */
+        private final int[] _map;
+
+        /** Cached hash code of _map. */
+        private final int _hash;
+    }
+
+    /** Tables built so far.  Entries disappear once no rotor refers to
+     *  their tables. */
+    private static final Map<Wiring, WeakReference<RotorTables>> CACHE =
+        new WeakHashMap<>();
+
+    /** Wiring these tables were built from; keeps my CACHE entry alive. */
+    private final Wiring _wiring;
+
+    /** Forward substitution at every setting. */
+    private final int[] _forward;
+
+    /** Backward substitution at every setting. */
+    private final int[] _backward;
+
+}
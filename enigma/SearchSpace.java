@@ -0,0 +1,96 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The keys among which the key searches look: the wheel orders that
+ *  can be assembled from a factory's rotors and the settings of their
+ *  rotors.  The settings of the non-moving rotors are numbered by
+ *  reading them as the digits of a number in base alphabet size, and
+ *  those of the moving rotors are numbered as the states of a
+ *  KeystreamTable.
+ *  @author David Babazadeh
+ */
+final class SearchSpace {
+
+    /** Not instantiable. */
+    private SearchSpace() {
+    }
+
+    /** Return every wheel order that may be assembled from the rotors of
+     *  FACTORY, each giving the names of the rotors from the reflector
+     *  to the fast rotor: a reflector, distinct non-moving rotors, and
+     *  distinct moving rotors in the remaining slots. */
+    static List<String[]> wheelOrders(MachineFactory factory) {
+        List<String> reflectors = new ArrayList<>(), fixed = new ArrayList<>(),
+            moving = new ArrayList<>();
+        for (Rotor r : factory.rotors()) {
+            if (r.reflecting()) {
+                reflectors.add(r.name());
+            } else if (r.rotates()) {
+                moving.add(r.name());
+            } else {
+                fixed.add(r.name());
+            }
+        }
+        List<String[]> orders = new ArrayList<>();
+        String[] order = new String[factory.numRotors()];
+        for (String reflector : reflectors) {
+            order[0] = reflector;
+            addOrders(orders, order, 1,
+                      factory.numRotors() - factory.numPawls(), fixed, moving);
+        }
+        return orders;
+    }
+
+    /** Add to ORDERS each completion of ORDER from slot K on, drawing
+     *  the slots before MOVINGSLOT from FIXED and the others from
+     *  MOVING, without repeating a rotor. */
+    private static void addOrders(List<String[]> orders, String[] order,
+                                  int k, int movingSlot, List<String> fixed,
+                                  List<String> moving) {
+        if (k == order.length) {
+            orders.add(order.clone());
+            return;
+        }
+        for (String name : k < movingSlot ? fixed : moving) {
+            if (!Arrays.asList(order).subList(1, k).contains(name)) {
+                order[k] = name;
+                addOrders(orders, order, k + 1, movingSlot, fixed, moving);
+            }
+        }
+    }
+
+    /** Return the number of combinations of settings of the non-moving
+     *  rotors (other than the reflector) of the machines made by
+     *  FACTORY. */
+    static int fixedSettings(MachineFactory factory) {
+        int result = 1;
+        for (int i = factory.numRotors() - factory.numPawls() - 1; i > 0;
+             i -= 1) {
+            result *= factory.alphabet().size();
+        }
+        return result;
+    }
+
+    /** Return the rotor settings, as for Machine.setRotors, of the
+     *  machines made by FACTORY in which the non-moving rotors are at
+     *  settings number FIXED and the moving rotors in state STATE. */
+    static String setting(MachineFactory factory, int fixed, int state) {
+        Alphabet alpha = factory.alphabet();
+        int size = alpha.size(), pawls = factory.numPawls();
+        char[] setting = new char[factory.numRotors() - 1];
+        for (int i = setting.length - 1; i >= 0; i -= 1) {
+            if (i >= setting.length - pawls) {
+                setting[i] = alpha.toChar(state % size);
+                state /= size;
+            } else {
+                setting[i] = alpha.toChar(fixed % size);
+                fixed /= size;
+            }
+        }
+        return new String(setting);
+    }
+
+}
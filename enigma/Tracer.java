@@ -0,0 +1,53 @@
+package enigma;
+
+/** Receives the intermediate values of each conversion performed by a
+ *  Machine, for use by --verbose.
+ *  @author David Babazadeh
+ */
+interface Tracer {
+
+    /** A tracer that records nothing.  Machines using it never call it
+     *  while converting. */
+    Tracer NONE = new Tracer() {
+        @Override
+        public boolean enabled() {
+            return false;
+        }
+
+        @Override
+        public void keypress(int[] settings, int c) {
+        }
+
+        @Override
+        public void stage(int c) {
+        }
+
+        @Override
+        public void end(int c) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /** Return true iff I record anything. */
+    boolean enabled();
+
+    /** Record the start of the conversion of C (an index into the
+     *  alphabet), after the rotors (not counting the reflector) have
+     *  advanced to SETTINGS. */
+    void keypress(int[] settings, int c);
+
+    /** Record that the current conversion has reached C after one more
+     *  stage (the plugboard or one pass through a rotor). */
+    void stage(int c);
+
+    /** Record that the current conversion produced C. */
+    void end(int c);
+
+    /** Finish recording, making sure everything recorded so far has
+     *  been reported. */
+    void close();
+
+}
@@ -14,9 +14,19 @@ public class UnitTest {
             System.exit(textui.runClasses(PermutationTest.class,
                     MovingRotorTest.class));
         }
-        System.exit(textui.runClasses(PermutationTest.class,
+        System.exit(textui.runClasses(AlphabetTest.class,
+                PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                MachineFactoryTest.class,
+                CompiledConfigTest.class,
+                ConfigParserTest.class,
+                KeySearchTest.class,
+                NgramTableTest.class,
+                PlugboardSolverTest.class,
+                BombeTest.class,
+                CribDragTest.class,
+                RingSearchTest.class));
     }
 
 }